@@ -0,0 +1,61 @@
+package org.example.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.example.model.asianCountry.CountryFact;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Result parsing of SPARQL fact responses in each results format, from the recorded size up to
+ * 5000 rows, plain and gzip-compressed as they come off the wire.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"48", "500", "5000"})
+    public int rows;
+
+    @Param({"JSON", "TSV", "CSV"})
+    public ResultFormat format;
+
+    private byte[] body;
+    private byte[] gzipped;
+    private HttpHeaders gzip;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = Fixtures.facts(rows, format);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream z = new GZIPOutputStream(out)) {
+            z.write(body);
+        }
+        gzipped = out.toByteArray();
+        gzip = HttpHeaders.of(Map.of("Content-Encoding", List.of("gzip")), (k, v) -> true);
+        System.out.printf("%n%s, %d rows: %d bytes, %d gzipped%n", format, rows, body.length, gzipped.length);
+    }
+
+    @Benchmark
+    public List<CountryFact> parseCountryFacts() throws IOException {
+        return DbpediaClient.parseCountryFacts(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<CountryFact> parseGzipped() throws IOException {
+        try (InputStream in = DbpediaClient.decoded(new ByteArrayInputStream(gzipped), gzip)) {
+            return DbpediaClient.parseCountryFacts(in);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.example.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * Checks that the JSON, TSV and CSV readers agree: the same result written in each format must
+ * parse to the same CountryFacts, and so must the hand-written dialects and codings the client
+ * meets on the wire (Virtuoso TSV, backslash-u escapes, byte order marks, gzip, zlib and raw
+ * deflate). Runs every check and exits with status 1 when any of them failed.
+ *
+ *   mvn -Pjmh package exec:exec -Djmh.main=org.example.model.ParseCheck -Djmh.args=
+ */
+public final class ParseCheck {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+
+    private static int failures;
+
+    private ParseCheck() {}
+
+    public static void main(String[] args) throws IOException {
+        sameInEveryFormat("recorded", Fixtures.recordedFacts());
+        // labels with quotes, separators, line breaks and escapes; a quoted CSV field of 40K
+        // spans several 16K refills and a buffer growth
+        sameInEveryFormat("awkward literals", awkwardFacts(3000));
+        dialects();
+        byteOrderMarks();
+        codings();
+        if (failures > 0) {
+            System.out.printf("%d check(s) failed%n", failures);
+            System.exit(1);
+        }
+        System.out.println("all parse checks passed");
+    }
+
+    private static void sameInEveryFormat(String name, byte[] json) throws IOException {
+        List<String> expected = keys(parse(json));
+        for (ResultFormat f : ResultFormat.values()) {
+            byte[] body = Fixtures.convert(json, f);
+            check(name + " detected as " + f, detect(body) == f);
+            same(name + " as " + f, expected, keys(parse(body)));
+        }
+    }
+
+    private static void dialects() throws IOException {
+        // Virtuoso: quoted header names, IRIs and literals in plain quotes, "" for a quote
+        String virtuoso = "\"country\"\t\"countryLabel\"\t\"capital\"\t\"capitalLabel\"\t\"population\"\t\"thumbnail\"\n"
+                + "\"http://dbpedia.org/resource/Vietnam\"\t\"Vi\u1EC7t \"\"Nam\"\"\"\t"
+                + "\"http://dbpedia.org/resource/Hanoi\"\t\"H\u00E0 N\u1ED9i\"\t98000000\t\n";
+        same("virtuoso tsv", List.of(key("http://dbpedia.org/resource/Vietnam", "Vi\u1EC7t \"Nam\"",
+                        "http://dbpedia.org/resource/Hanoi", "H\u00E0 N\u1ED9i", 98000000L, null)),
+                keys(parse(virtuoso.getBytes(StandardCharsets.UTF_8))));
+
+        // SPARQL 1.1 TSV with \\u and \\U escapes, language tags and a datatype
+        String escaped = "?country\t?countryLabel\t?capital\t?capitalLabel\t?population\t?thumbnail\r\n"
+                + "<http://x/C1>\t\"Caf\\u00E9 \\U0001F600\"@en\t<http://x/K1>\t\"Tab\\there\"@vi\t"
+                + "\"42\"^^<" + XSD_INTEGER + ">\t\r\n"
+                + "<http://x/C2>\t\"Back\\\\slash \\\"q\\\"\\nline\"@en-GB\t\t\t\t<http://x/t.svg>\r\n";
+        same("escaped tsv", List.of(
+                        key("http://x/C1", "Caf\u00E9 \uD83D\uDE00", "http://x/K1", "Tab\there", 42L, null),
+                        key("http://x/C2", "Back\\slash \"q\"\nline", null, null, null, "http://x/t.svg")),
+                keys(parse(escaped.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static void byteOrderMarks() throws IOException {
+        byte[] json = Fixtures.recordedFacts();
+        List<String> expected = keys(parse(json));
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        for (ResultFormat f : ResultFormat.values()) {
+            byte[] body = concat(bom, Fixtures.convert(json, f));
+            check("bom " + f + " detected", detect(body) == f);
+            if (f != ResultFormat.JSON) same("bom " + f, expected, keys(parse(body)));
+        }
+        byte[] spaced = concat("\r\n  ".getBytes(StandardCharsets.US_ASCII), json);
+        check("json after blank space detected", detect(spaced) == ResultFormat.JSON);
+        same("json after blank space", expected, keys(parse(spaced)));
+    }
+
+    private static void codings() throws IOException {
+        byte[] json = awkwardFacts(500);
+        List<String> expected = keys(parse(json));
+        for (ResultFormat f : ResultFormat.values()) {
+            byte[] body = Fixtures.convert(json, f);
+            same(f + " gzip", expected, decodeAndParse(gzip(body), "gzip", false));
+            same(f + " zlib deflate", expected, decodeAndParse(deflate(body, false), "deflate", false));
+            same(f + " raw deflate", expected, decodeAndParse(deflate(body, true), "deflate", false));
+            // a body stream without mark/reset, as HttpClient hands it over
+            same(f + " raw deflate, unmarkable", expected, decodeAndParse(deflate(body, true), "deflate", true));
+            same(f + " whole-body zlib", expected,
+                    keys(parse(DbpediaClient.decoded(deflate(body, false), headers("deflate")))));
+        }
+    }
+
+    /** {@code rows} facts whose labels need quoting or escaping in every format, as SPARQL JSON. */
+    private static byte[] awkwardFacts(int rows) throws IOException {
+        String[] labels = {
+                "Plain", "With \"quotes\"", "Comma, separated", "Tab\tseparated", "Two\nlines",
+                "Carriage\r\nreturn", "Back\\slash", "Vi\u1EC7t Nam", "Emoji \uD83C\uDDFB\uD83C\uDDF3",
+                "\"\"", " padded ", "'single'"};
+        String[] langs = {"en", "vi", "en-GB", null};
+        ObjectNode doc = MAPPER.createObjectNode();
+        ArrayNode vars = doc.putObject("head").putArray("vars");
+        for (String v : DbpediaClient.FACT_VARS) vars.add(v);
+        ArrayNode bindings = doc.putObject("results").putArray("bindings");
+        for (int i = 0; i < rows; i++) {
+            ObjectNode row = bindings.addObject();
+            String label = labels[i % labels.length] + " " + i;
+            if (i == rows / 2) label = "Long \"quoted\", with\nbreaks ".repeat(1600);
+            uri(row, "country", "http://dbpedia.org/resource/C" + i);
+            literal(row, "countryLabel", label, langs[i % langs.length]);
+            if (i % 5 != 0) {
+                uri(row, "capital", "http://dbpedia.org/resource/K" + i);
+                literal(row, "capitalLabel", labels[(i + 3) % labels.length], langs[(i + 1) % langs.length]);
+            }
+            if (i % 7 != 0) {
+                ObjectNode pop = row.putObject("population");
+                pop.put("type", "typed-literal").put("datatype", XSD_INTEGER).put("value", Long.toString(1000L + 37L * i));
+            }
+            if (i % 3 == 0) uri(row, "thumbnail", "http://commons.wikimedia.org/wiki/Special:FilePath/F" + i + ".svg");
+        }
+        return MAPPER.writeValueAsBytes(doc);
+    }
+
+    private static void uri(ObjectNode row, String var, String value) {
+        row.putObject(var).put("type", "uri").put("value", value);
+    }
+
+    private static void literal(ObjectNode row, String var, String value, String lang) {
+        ObjectNode cell = row.putObject(var).put("type", "literal").put("value", value);
+        if (lang != null) cell.put("xml:lang", lang);
+    }
+
+    private static List<CountryFact> parse(byte[] body) throws IOException {
+        return DbpediaClient.parseCountryFacts(new ByteArrayInputStream(body));
+    }
+
+    private static List<String> decodeAndParse(byte[] body, String coding, boolean unmarkable) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        if (unmarkable) {
+            in = new FilterInputStream(in) {
+                @Override
+                public boolean markSupported() { return false; }
+            };
+        }
+        try (InputStream decoded = DbpediaClient.decoded(in, headers(coding))) {
+            return keys(DbpediaClient.parseCountryFacts(decoded));
+        }
+    }
+
+    private static ResultFormat detect(byte[] body) throws IOException {
+        return ResultFormat.detect(new ByteArrayInputStream(body));
+    }
+
+    private static HttpHeaders headers(String coding) {
+        return HttpHeaders.of(Map.of("Content-Encoding", List.of(coding)), (a, b) -> true);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body, boolean raw) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream z = new DeflaterOutputStream(out, deflater)) {
+            z.write(body);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = new byte[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static List<String> keys(List<CountryFact> facts) {
+        List<String> out = new ArrayList<>(facts.size());
+        for (CountryFact f : facts) {
+            out.add(key(f.getCountryUri(), f.getCountry(), f.getCapitalUri(), f.getCapital(),
+                    f.getPopulation(), f.getThumbnail()));
+        }
+        return out;
+    }
+
+    private static String key(String uri, String country, String capitalUri, String capital,
+                              Long population, String thumbnail) {
+        return uri + " | " + country + " | " + capitalUri + " | " + capital + " | " + population + " | " + thumbnail;
+    }
+
+    private static void same(String name, List<String> expected, List<String> actual) {
+        if (expected.equals(actual)) {
+            System.out.printf("ok   %s (%d rows)%n", name, actual.size());
+            return;
+        }
+        int i = 0;
+        while (i < expected.size() && i < actual.size() && expected.get(i).equals(actual.get(i))) i++;
+        System.out.printf("FAIL %s: %d rows, expected %d; first difference at row %d%n  expected %s%n  actual   %s%n",
+                name, actual.size(), expected.size(), i,
+                i < expected.size() ? expected.get(i) : "(none)", i < actual.size() ? actual.get(i) : "(none)");
+        failures++;
+    }
+
+    private static void check(String name, boolean ok) {
+        if (ok) {
+            System.out.printf("ok   %s%n", name);
+        } else {
+            System.out.printf("FAIL %s%n", name);
+            failures++;
+        }
+    }
+}
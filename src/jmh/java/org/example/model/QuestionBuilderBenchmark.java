@@ -0,0 +1,32 @@
+package org.example.model;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Question.Builder.buildShuffled with the four-option shape the generator produces. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QuestionBuilderBenchmark {
+
+    private final Random rnd = new Random(42);
+    private final List<String> options = List.of("Hanoi", "Bangkok", "Vientiane", "Phnom Penh");
+
+    @Benchmark
+    public Question buildShuffled() {
+        return new Question.Builder()
+                .type(Question.QuestionType.COUNTRY)
+                .prompt("What is the capital city of Vietnam?")
+                .options(options)
+                .correctIndex(0)
+                .meta("country", "Vietnam")
+                .meta("capital", "Hanoi")
+                .buildShuffled(rnd);
+    }
+}
@@ -0,0 +1,204 @@
+package org.example.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * Closed-loop load test of DbpediaClient against a {@link StubSparqlEndpoint}.
+ *
+ * Each worker thread repeatedly asks for a batch of country facts and records the call latency.
+ * Reports client throughput, latency percentiles, failed calls and retry amplification
+ * (HTTP requests seen by the server per client call; below 1 when concurrent identical page
+ * queries were coalesced by the client).
+ *
+ *   mvn -Pjmh package exec:exec -Djmh.main=org.example.model.SparqlLoadDriver \
+ *       -Djmh.args="threads=16 seconds=20 latency=80 sigma=0.6 p429=0.05 p5xx=0.05 reset=0.02 slow=0.02"
+ *
+ * Keys: threads, seconds, limit, retries, timeoutMs, async (true/false), pool (fixture rows),
+ * latency (median ms), sigma, p429, p5xx, reset, slow, slowDelayMs, retryAfter.
+ *
+ * Server limits: serverRate=N (requests per second), maxInFlight=N make the primary answer 429 (with
+ * Retry-After) and 503 past them. Client admission: rate (requests/s, 0 = off), burst and
+ * maxConcurrency set -Ddbpedia.rate/burst/maxConcurrency for the run.
+ *
+ * Result formats: format=auto|json|tsv|csv (-Ddbpedia.format, default auto) and gzip=true|false
+ * (-Ddbpedia.compression, default true). The server line shows the body bytes sent, the format
+ * line what each format cost per kind of query.
+ *
+ * Failover and hedging: mirrors=N starts N more stub endpoints without faults (median latency
+ * mirrorLatency, default the same as latency) and gives the client all of them; the faults above
+ * apply to the primary only. Compare p99 with mirrors=0 and mirrors=1.
+ */
+public final class SparqlLoadDriver {
+
+    private SparqlLoadDriver() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        int threads = intOpt(opt, "threads", 8);
+        int seconds = intOpt(opt, "seconds", 10);
+        int limit = intOpt(opt, "limit", 16);
+        int retries = intOpt(opt, "retries", 3);
+        int timeoutMs = intOpt(opt, "timeoutMs", 5000);
+        boolean async = Boolean.parseBoolean(opt.getOrDefault("async", "false"));
+        // client-side throttles are per host and read these once; the stub ports are new each run
+        System.setProperty("dbpedia.rate", opt.getOrDefault("rate", "0"));
+        if (opt.containsKey("burst")) System.setProperty("dbpedia.burst", opt.get("burst"));
+        if (opt.containsKey("maxConcurrency")) System.setProperty("dbpedia.maxConcurrency", opt.get("maxConcurrency"));
+        System.setProperty("dbpedia.format", opt.getOrDefault("format", "auto"));
+        System.setProperty("dbpedia.compression", opt.getOrDefault("gzip", "true"));
+
+        StubSparqlEndpoint.Faults faults = StubSparqlEndpoint.Faults.none()
+                .latency(doubleOpt(opt, "latency", 50), doubleOpt(opt, "sigma", 0.5))
+                .throttle(doubleOpt(opt, "p429", 0))
+                .serverErrors(doubleOpt(opt, "p5xx", 0))
+                .resets(doubleOpt(opt, "reset", 0))
+                .slowBodies(doubleOpt(opt, "slow", 0), intOpt(opt, "slowDelayMs", 20))
+                .retryAfter(intOpt(opt, "retryAfter", -1))
+                .limits(intOpt(opt, "serverRate", 0), intOpt(opt, "maxInFlight", 0));
+
+        List<CountryFact> pool = Fixtures.facts(intOpt(opt, "pool", 480));
+        List<StubSparqlEndpoint> stubs = new ArrayList<>();
+        try {
+            int mirrors = intOpt(opt, "mirrors", 0);
+            for (int i = 0; i <= mirrors; i++) stubs.add(StubSparqlEndpoint.start(pool, StubSparqlEndpoint.Faults.none()));
+            List<String> urls = stubs.stream().map(StubSparqlEndpoint::url).toList();
+            DbpediaClient client = new DbpediaClient(urls, Duration.ofMillis(timeoutMs), retries, null);
+            // row counts are fetched once per client; get them before faults are switched on
+            client.getRandomAsianCountryFacts(limit);
+            stubs.get(0).setFaults(faults);
+            StubSparqlEndpoint.Faults mirrorFaults = StubSparqlEndpoint.Faults.none()
+                    .latency(doubleOpt(opt, "mirrorLatency", doubleOpt(opt, "latency", 50)), doubleOpt(opt, "sigma", 0.5));
+            for (int i = 1; i < stubs.size(); i++) stubs.get(i).setFaults(mirrorFaults);
+
+            Result r = run(client, threads, seconds, limit, async, stubs);
+            System.out.println("faults:  " + faults + (mirrors > 0 ? ", mirrors: " + mirrors + " x " + mirrorFaults : ""));
+            System.out.println("client:  threads=" + threads + " retries=" + retries + " async=" + async);
+            for (StubSparqlEndpoint stub : stubs) System.out.println("server:  " + stub.stats());
+            if (mirrors > 0) System.out.println("health:  " + client.endpointHealth());
+            System.out.println("formats: " + client.formatCosts());
+            System.out.println(r);
+        } finally {
+            for (StubSparqlEndpoint stub : stubs) stub.close();
+        }
+    }
+
+    static final class Result {
+        final long calls;
+        final long failures;
+        final long serverRequests;
+        final double seconds;
+        final long[] latenciesNanos;
+
+        Result(long calls, long failures, long serverRequests, double seconds, long[] latenciesNanos) {
+            this.calls = calls;
+            this.failures = failures;
+            this.serverRequests = serverRequests;
+            this.seconds = seconds;
+            this.latenciesNanos = latenciesNanos;
+        }
+
+        double percentileMs(double p) {
+            if (latenciesNanos.length == 0) return Double.NaN;
+            int i = (int) Math.ceil(p / 100.0 * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, Math.min(latenciesNanos.length - 1, i))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "result:  calls=%d (%.1f/s) failed=%d (%.1f%%)%n"
+                            + "latency: p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms%n"
+                            + "retry amplification: %.2f server requests per call",
+                    calls, calls / seconds, failures, calls == 0 ? 0 : 100.0 * failures / calls,
+                    percentileMs(50), percentileMs(90), percentileMs(99), percentileMs(99.9), percentileMs(100),
+                    calls == 0 ? 0 : (double) serverRequests / calls);
+        }
+    }
+
+    static Result run(DbpediaClient client, int threads, int seconds, int limit, boolean async,
+                      List<StubSparqlEndpoint> stubs) throws Exception {
+        long before = requests(stubs);
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        // each worker owns its slot; await() below publishes the arrays and counts
+        long[][] perThread = new long[threads][];
+        int[] counts = new int[threads];
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            Thread w = new Thread(() -> {
+                try {
+                    long[] mine = new long[1 << 12];
+                    int n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long t0 = System.nanoTime();
+                        try {
+                            if (async) {
+                                CompletableFuture<?> f = client.getRandomAsianCountryFactsAsync(limit);
+                                DbpediaClient.await(f);
+                            } else {
+                                client.getRandomAsianCountryFacts(limit);
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                        mine[n++] = System.nanoTime() - t0;
+                    }
+                    perThread[slot] = mine;
+                    counts[slot] = n;
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            w.setDaemon(true);
+            w.start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int total = 0;
+        for (int c : counts) total += c;
+        long[] all = new long[total];
+        int off = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(perThread[t], 0, all, off, counts[t]);
+            off += counts[t];
+        }
+        Arrays.sort(all);
+        return new Result(total, failures.get(), requests(stubs) - before, elapsed, all);
+    }
+
+    private static long requests(List<StubSparqlEndpoint> stubs) {
+        long n = 0;
+        for (StubSparqlEndpoint s : stubs) n += s.requestCount();
+        return n;
+    }
+
+    private static int intOpt(Map<String, String> opt, String key, int def) {
+        String v = opt.get(key);
+        return v == null ? def : Integer.parseInt(v.trim());
+    }
+
+    private static double doubleOpt(Map<String, String> opt, String key, double def) {
+        String v = opt.get(key);
+        return v == null ? def : Double.parseDouble(v.trim());
+    }
+}
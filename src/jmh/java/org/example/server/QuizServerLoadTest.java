@@ -0,0 +1,182 @@
+package org.example.server;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.model.DbpediaClient;
+import org.example.model.Fixtures;
+import org.example.model.StubSparqlEndpoint;
+import org.example.service.FactRepository;
+
+/**
+ * Closed-loop load test of {@link QuizServer}: each client plays complete sessions
+ * (start, 10 x next + answer, result, delete) back to back. Facts come from a
+ * {@link StubSparqlEndpoint}, so the numbers are for one box with no real network.
+ *
+ *   mvn -Pjmh package exec:exec -Djmh.main=org.example.server.QuizServerLoadTest \
+ *       -Djmh.args="clients=200 seconds=20 executor=pool threads=64"
+ *
+ * Keys: clients, seconds, executor (auto|virtual|pool), threads (pool size), latency (stub
+ * median ms), pool (fixture rows).
+ */
+public final class QuizServerLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] ROUTES = {"start", "next", "answer", "result", "delete"};
+
+    private QuizServerLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        // launch setting of QuizServer.main; set before the stub endpoint starts the first HttpServer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        int clients = Integer.parseInt(opt.getOrDefault("clients", "50"));
+        int seconds = Integer.parseInt(opt.getOrDefault("seconds", "10"));
+        System.setProperty("quiz.server.executor", opt.getOrDefault("executor", "auto"));
+        if (opt.containsKey("threads")) System.setProperty("quiz.server.threads", opt.get("threads"));
+
+        StubSparqlEndpoint.Faults faults = StubSparqlEndpoint.Faults.none()
+                .latency(Double.parseDouble(opt.getOrDefault("latency", "30")), 0.5);
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(
+                Fixtures.facts(Integer.parseInt(opt.getOrDefault("pool", "480"))), faults)) {
+            FactRepository facts = new FactRepository(new DbpediaClient(stub.url(), Duration.ofSeconds(10), 2), 16);
+            ExecutorService executor = RequestExecutors.fromSystemProperties();
+            QuizServer server = new QuizServer(facts, new InetSocketAddress("127.0.0.1", 0), executor);
+            server.start();
+            try {
+                run("http://127.0.0.1:" + server.port() + "/api/sessions", clients, seconds,
+                        RequestExecutors.describe(executor), stub);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static void run(String base, int clients, int seconds, String executor,
+                            StubSparqlEndpoint stub) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[][][] latencies = new long[clients][][];
+        int[][] counts = new int[clients][];
+        AtomicLong sessions = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+
+        for (int c = 0; c < clients; c++) {
+            int slot = c;
+            Thread t = new Thread(() -> {
+                long[][] lat = new long[ROUTES.length][256];
+                int[] n = new int[ROUTES.length];
+                try {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            playSession(http, base, lat, n);
+                            sessions.incrementAndGet();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latencies[slot] = lat;
+                    counts[slot] = n;
+                    done.countDown();
+                }
+            }, "client-" + c);
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("executor=%s clients=%d %.1fs%n", executor, clients, elapsed);
+        System.out.printf("sessions: %d (%.1f/s), failed %d; upstream requests %d%n",
+                sessions.get(), sessions.get() / elapsed, failures.get(), stub.requestCount());
+        long[] all = new long[0];
+        for (int r = 0; r < ROUTES.length; r++) {
+            long[] merged = merge(latencies, counts, r);
+            report(ROUTES[r], merged, elapsed);
+            all = concat(all, merged);
+        }
+        report("all", all, elapsed);
+    }
+
+    private static void playSession(HttpClient http, String base, long[][] lat, int[] n) throws Exception {
+        String id = call(http, HttpRequest.newBuilder(URI.create(base)).POST(HttpRequest.BodyPublishers.noBody()),
+                0, lat, n).get("id").asText();
+        String session = base + "/" + id;
+        while (true) {
+            JsonNode q = call(http, HttpRequest.newBuilder(URI.create(session + "/next")).GET(), 1, lat, n);
+            if (q.path("done").asBoolean(false)) break;
+            int pick = ThreadLocalRandom.current().nextInt(q.get("options").size());
+            call(http, HttpRequest.newBuilder(URI.create(session + "/answer"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"selected\":" + pick + "}")), 2, lat, n);
+        }
+        call(http, HttpRequest.newBuilder(URI.create(session + "/result")).GET(), 3, lat, n);
+        call(http, HttpRequest.newBuilder(URI.create(session)).DELETE(), 4, lat, n);
+    }
+
+    private static JsonNode call(HttpClient http, HttpRequest.Builder req, int route,
+                                 long[][] lat, int[] n) throws Exception {
+        long t0 = System.nanoTime();
+        HttpResponse<byte[]> resp = http.send(req.timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        long took = System.nanoTime() - t0;
+        if (n[route] == lat[route].length) lat[route] = Arrays.copyOf(lat[route], n[route] * 2);
+        lat[route][n[route]++] = took;
+        if (resp.statusCode() / 100 != 2) {
+            throw new IllegalStateException(ROUTES[route] + " -> HTTP " + resp.statusCode());
+        }
+        return MAPPER.readTree(resp.body());
+    }
+
+    private static long[] merge(long[][][] latencies, int[][] counts, int route) {
+        int total = 0;
+        for (int[] c : counts) total += c[route];
+        long[] out = new long[total];
+        int off = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            System.arraycopy(latencies[i][route], 0, out, off, counts[i][route]);
+            off += counts[i][route];
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        Arrays.sort(out);
+        return out;
+    }
+
+    private static void report(String route, long[] sorted, double seconds) {
+        if (sorted.length == 0) return;
+        System.out.printf("%-7s %8d req (%7.1f/s)  p50=%7.2fms  p99=%7.2fms  max=%7.2fms%n", route,
+                sorted.length, sorted.length / seconds, pct(sorted, 50), pct(sorted, 99), pct(sorted, 100));
+    }
+
+    private static double pct(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+}
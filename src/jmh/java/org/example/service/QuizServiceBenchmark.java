@@ -0,0 +1,87 @@
+package org.example.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.example.model.DbpediaClient;
+import org.example.model.Fixtures;
+import org.example.model.Question;
+import org.example.model.asianCountry.CountryFact;
+import org.example.service.gen.CountryQuestionGenerator;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * QuizService.getNextQuestion against an in-process client that answers from a fixed pool of
+ * fixture facts, so the numbers cover buffering, refill and generation but no network.
+ * A service that has asked every country is replaced inline; that cost is part of the score.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QuizServiceBenchmark {
+
+    @Param({"50", "500"})
+    public int poolSize;
+
+    private StubClient client;
+    private QuizService service;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        client = new StubClient(Fixtures.facts(poolSize));
+        service = newService();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public Question getNextQuestion() throws Exception {
+        Optional<Question> q = service.getNextQuestion(Duration.ofSeconds(5));
+        if (q.isEmpty()) {
+            service.close();
+            service = newService();
+            q = service.getNextQuestion(Duration.ofSeconds(5));
+        }
+        return q.orElseThrow();
+    }
+
+    private QuizService newService() throws Exception {
+        QuizService s = new QuizService(client, new CountryQuestionGenerator(new Random(42)), 16, 6);
+        s.preload();
+        return s;
+    }
+
+    /** Answers the preload query with random samples of the pool, already completed. */
+    static final class StubClient extends DbpediaClient {
+        private final List<CountryFact> pool;
+        private final Random rnd = new Random(7);
+
+        StubClient(List<CountryFact> pool) {
+            super("http://localhost/unused", Duration.ofSeconds(1), 0);
+            this.pool = pool;
+        }
+
+        @Override
+        public CompletableFuture<List<CountryFact>> getRandomAsianCountryFactsAsync(int limit) {
+            return CompletableFuture.completedFuture(sample(pool, limit));
+        }
+
+        private synchronized <T> List<T> sample(List<T> from, int limit) {
+            List<T> copy = new ArrayList<>(from);
+            Collections.shuffle(copy, rnd);
+            return new ArrayList<>(copy.subList(0, Math.min(limit, copy.size())));
+        }
+    }
+}
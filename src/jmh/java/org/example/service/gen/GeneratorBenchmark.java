@@ -0,0 +1,76 @@
+package org.example.service.gen;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.example.model.Fixtures;
+import org.example.model.Question;
+import org.example.model.asianCountry.CountryFact;
+import org.openjdk.jmh.annotations.*;
+
+/** CountryQuestionGenerator.generate and generateBatch over indexed pools of 50/500/5000 facts. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int poolSize;
+
+    private List<CountryFact> facts;
+    private DistractorIndex index;
+    private CountryQuestionGenerator random;
+    private CountryQuestionGenerator hard;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        facts = Fixtures.facts(poolSize);
+        index = DistractorIndex.build(facts, List.of());
+        random = new CountryQuestionGenerator(new Random(42));
+        hard = new CountryQuestionGenerator(new Random(42), true);
+    }
+
+    @Benchmark
+    public Optional<Question> generate() {
+        return random.generate(nextFact(), index);
+    }
+
+    @Benchmark
+    public Optional<Question> generateHard() {
+        return hard.generate(nextFact(), index);
+    }
+
+    /** Population comparisons: two binary searches and a few primitive draws each. */
+    @Benchmark
+    public Optional<Question> largestPopulation() {
+        return random.largestPopulation(nextFact(), index);
+    }
+
+    @Benchmark
+    public Optional<Question> morePopulous() {
+        return hard.morePopulous(nextFact(), index);
+    }
+
+    /** Half the pool (at most 1000) unique questions in one call, spread over the common pool. */
+    @Benchmark
+    public List<Question> generateBatch() {
+        return random.generateBatch(facts, index, Math.min(1000, poolSize / 2), BatchConstraints.any());
+    }
+
+    @Benchmark
+    public DistractorIndex buildIndex() {
+        return DistractorIndex.build(facts, List.of());
+    }
+
+    private CountryFact nextFact() {
+        CountryFact f = facts.get(next);
+        next = next + 1 == facts.size() ? 0 : next + 1;
+        return f;
+    }
+}
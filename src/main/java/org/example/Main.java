@@ -2,13 +2,29 @@ package org.example;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import org.example.metrics.Metrics;
 import org.example.service.Navigation;
+import org.example.service.StartupWarmup;
+import org.slf4j.LoggerFactory;
 
 public class Main extends Application {
     @Override
     public void start(Stage primaryStage) throws Exception {
+        // fetch facts and build the first questions while the init screen is up
+        StartupWarmup.start();
         Navigation.setStage(primaryStage);
-        Navigation.navigateTo("/screen/init.fxml");
+        Navigation.navigateTo(StartupWarmup.isProbe() ? "/screen/quiz.fxml" : "/screen/init.fxml");
+        // parse the other screens right after the first one is up
+        Navigation.preload("/screen/quiz.fxml", "/screen/result.fxml");
+    }
+
+    @Override
+    public void stop() {
+        StartupWarmup.discard();
+        // -Dquiz.metrics=true: dump the session's metrics on exit
+        if (Metrics.isEnabled()) {
+            Metrics.snapshot().forEach((name, stat) -> LoggerFactory.getLogger(Main.class).info("{} {}", name, stat));
+        }
     }
 
     public static void main(String[] args) {
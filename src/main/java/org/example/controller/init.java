@@ -1,8 +1,6 @@
 package org.example.controller;
 
-import javafx.scene.Node;
 import javafx.scene.control.Button;
-import javafx.stage.Stage;
 import org.example.service.Navigation;
 
 import java.io.IOException;
@@ -10,10 +8,8 @@ import java.io.IOException;
 public class init {
     private Button btnPlay;
 
+    // chuyển scene trên cùng cửa sổ (scene của quiz đã được Navigation cache sẵn)
     public void onClickPlay(javafx.event.ActionEvent event) throws IOException {
-        Navigation.setStage(new Stage());
         Navigation.navigateTo("/screen/quiz.fxml");
-        Stage oldStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        oldStage.close();
     }
 }
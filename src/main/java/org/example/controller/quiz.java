@@ -7,15 +7,20 @@ import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
+import org.example.metrics.QuizEvents;
 import org.example.model.ResultStore;
 import org.example.model.Question;
 import org.example.model.QuizResult;
-import org.example.service.QuizService;
+import org.example.service.ImageCache;
+import org.example.service.QuestionSource;
+import org.example.service.StartupWarmup;
 import org.example.service.Navigation;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * Controller khớp với FXML:
@@ -27,7 +32,7 @@ import java.util.concurrent.CompletableFuture;
  * - Người dùng Answer/Skip -> lock nút, hiển thị đúng/sai -> auto next sau 1.2s.
  * - Hết câu -> goToResult() (bạn nối scene sang Result).
  */
-public class quiz {
+public class quiz implements Navigation.Lifecycle {
 
     @FXML private Label questionLabel;
     @FXML private ToggleGroup optionsGroup;   // gắn group trong FXML
@@ -38,15 +43,20 @@ public class quiz {
     @FXML private Button nextButton;
     @FXML private ImageView thumbnail;
 
-    private final QuizService quizService = new QuizService();
+    private QuestionSource quizService;   // mỗi lượt chơi một nguồn mới; lượt đầu đã preload từ lúc mở app
+    private final ImageCache images = ImageCache.getDefault();
     private Question current;
 
     // ====== cấu hình quiz ======
     private static final int MAX_QUESTIONS = 10;
+    private static final Duration FIRST_QUESTION_WAIT = Duration.ofSeconds(30);
+    private static final Duration NEXT_QUESTION_WAIT = Duration.ofSeconds(15);
+    private static final int PREFETCH_THUMBNAILS = 3;
 
     // ====== trạng thái runtime ======
     private int index = 0;        // đếm câu hiện tại (1..MAX_QUESTIONS)
     private int score = 0;        // số câu đúng
+    private int round = 0;        // tăng mỗi lượt chơi; callback của lượt cũ thì bỏ qua
     private final List<AnswerReview> history = new ArrayList<>();
 
     // Lưu thông tin để hiển thị lời giải ở màn Result
@@ -61,25 +71,55 @@ public class quiz {
 
     @FXML
     public void initialize() {
-        setUiEnabled(false);
         nextButton.setOnAction(evt -> onNext());
+    }
+
+    // Màn hình được cache (Navigation): dọn trạng thái lượt trước thay vì load lại FXML
+    @Override
+    public void reset() {
+        round++;
+        if (quizService != null) quizService.close();
+        quizService = null;
+        current = null;
+        index = 0;
+        score = 0;
+        history.clear();
+        questionLabel.setText("");
+        optionsGroup.selectToggle(null);
+        if (thumbnail != null) {
+            thumbnail.setImage(null);
+            thumbnail.setVisible(false);
+        }
+    }
+
+    @Override
+    public void activate() {
+        setUiEnabled(false);
+        quizService = StartupWarmup.takeSource();   // -Dquiz.pack=<file> để chạy offline
+        QuestionSource source = quizService;
+        int myRound = round;
 
         // preload + lấy câu đầu
-        CompletableFuture.runAsync(() -> {
+        CompletableFuture.supplyAsync(() -> {
             try {
-                quizService.preload();
-                current = quizService.getNextQuestion().orElse(null);
+                source.preload();
+                return source.getNextQuestion(FIRST_QUESTION_WAIT).orElse(null);
             } catch (Exception e) {
                 e.printStackTrace();
+                return null;
             }
-        }).thenRunAsync(() -> {
+        }).thenAcceptAsync(first -> {
+            if (myRound != round) return;
+            current = first;
             setUiEnabled(true);
             if (current != null) {
                 index = 1;
                 render(current);
                 updateNextButtonText();
+                StartupWarmup.firstQuestionShown();
             } else {
                 questionLabel.setText("Không tải được câu hỏi.");
+                if (StartupWarmup.isProbe()) Platform.exit();
             }
         }, Platform::runLater);
     }
@@ -96,24 +136,42 @@ public class quiz {
     private void render(Question q) {
         questionLabel.setText(q.getPrompt());
         var opts = q.getOptions();
-        optionA.setText(opts.get(0));
-        optionB.setText(opts.get(1));
-        optionC.setText(opts.get(2));
-        optionD.setText(opts.get(3));
+        // câu Có/Không chỉ có 2 lựa chọn -> ẩn các nút thừa
+        RadioButton[] buttons = { optionA, optionB, optionC, optionD };
+        for (int i = 0; i < buttons.length; i++) {
+            boolean used = i < opts.size();
+            buttons[i].setText(used ? opts.get(i) : "");
+            buttons[i].setVisible(used);
+            buttons[i].setManaged(used);
+        }
         optionsGroup.selectToggle(null);
 
-        // thumbnail (nếu có)
+        // thumbnail (nếu có) - lấy từ cache, đã decode đúng kích thước hiển thị
+        if (thumbnail == null) return;
+        double size = thumbnail.getFitWidth();
         String url = q.getMeta().get("thumbnail");
+        thumbnail.setImage(null);
+        thumbnail.setVisible(false);
         if (url != null && !url.isBlank()) {
-            try {
-                thumbnail.setImage(new Image(url, true)); // async
-                thumbnail.setVisible(true);
-            } catch (Exception ignored) {
-                thumbnail.setVisible(false);
+            Image cached = images.getIfReady(url, size, size);
+            if (cached != null) {
+                showThumbnail(cached);
+            } else {
+                images.load(url, size, size).thenAcceptAsync(img -> {
+                    if (img != null && current == q) showThumbnail(img);
+                }, Platform::runLater);
             }
-        } else {
-            thumbnail.setVisible(false);
         }
+
+        // tải trước ảnh của các câu kế tiếp đang nằm trong buffer
+        images.prefetch(quizService.peekUpcoming(PREFETCH_THUMBNAILS).stream()
+                .map(next -> next.getMeta().get("thumbnail"))
+                .collect(Collectors.toList()), size, size);
+    }
+
+    private void showThumbnail(Image img) {
+        thumbnail.setImage(img);
+        thumbnail.setVisible(true);
     }
 
     private void onNext() {
@@ -131,29 +189,48 @@ public class quiz {
             return;
         }
 
-        // Lấy câu kế
+        // đo thời gian từ lúc bấm Next đến khi câu mới hiển thị (JFR / Metrics)
+        QuizEvents.NextToRender timing = QuizEvents.NextToRender.start();
+
+        // Câu kế thường đã có sẵn trong buffer -> hiển thị ngay, không chờ mạng
+        var ready = quizService.pollNextQuestion();
+        if (ready.isPresent()) {
+            showNext(ready.get());
+            timing.finish(true);
+            return;
+        }
+
+        // Buffer tạm trống -> chờ refiller (có timeout) ở luồng nền
         setUiEnabled(false);
+        QuestionSource source = quizService;
+        int myRound = round;
         CompletableFuture.supplyAsync(() -> {
             try {
-                return quizService.getNextQuestion().orElse(null);
+                return source.getNextQuestion(NEXT_QUESTION_WAIT).orElse(null);
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
             }
         }).thenAcceptAsync(q -> {
+            if (myRound != round) return;
             setUiEnabled(true);
-            if (q != null) {
-                current = q;
-                index++;
-                render(q);
-                updateNextButtonText();
-            } else {
-                // Nếu service hết câu sớm hơn 10 → vẫn kết thúc và show kết quả
-                goToResult();
-            }
+            showNext(q);
+            timing.finish(false);
         }, Platform::runLater);
     }
 
+    private void showNext(Question q) {
+        if (q != null) {
+            current = q;
+            index++;
+            render(q);
+            updateNextButtonText();
+        } else {
+            // Nếu service hết câu sớm hơn 10 → vẫn kết thúc và show kết quả
+            goToResult();
+        }
+    }
+
     private void updateNextButtonText() {
         nextButton.setText(index >= MAX_QUESTIONS ? "Finish" : "Next");
     }
@@ -184,6 +261,7 @@ public class quiz {
         QuizResult result = new QuizResult(score, history.size(), items);
 
         // Đặt vào store rồi chuyển scene
+        quizService.close();
         ResultStore.set(result);
         Navigation.navigateTo("/screen/result.fxml");
 
@@ -8,7 +8,7 @@ import org.example.model.QuizResult;
 import org.example.service.Navigation;
 
 
-public class result {
+public class result implements Navigation.Lifecycle {
 
     @FXML
     private Label scoreLabel;
@@ -17,16 +17,6 @@ public class result {
 
     @FXML
     public void initialize() {
-        QuizResult data = ResultStore.get();
-        if (data == null) {
-            scoreLabel.setText("No data.");
-            return;
-        }
-
-        scoreLabel.setText("Score: " + data.getScore() + " / " + data.getTotal()
-                + " (" + Math.round(data.getAccuracy() * 100) + "%)");
-
-        listView.getItems().setAll(data.getItems());
         listView.setCellFactory(lv -> new ListCell<>() {
             @Override
             protected void updateItem(QuizResult.Item it, boolean empty) {
@@ -49,6 +39,23 @@ public class result {
         });
     }
 
+    // Màn hình được cache: mỗi lần hiển thị thì đọc kết quả mới từ ResultStore
+    @Override
+    public void activate() {
+        QuizResult data = ResultStore.get();
+        if (data == null) {
+            scoreLabel.setText("No data.");
+            listView.getItems().clear();
+            return;
+        }
+
+        scoreLabel.setText("Score: " + data.getScore() + " / " + data.getTotal()
+                + " (" + Math.round(data.getAccuracy() * 100) + "%)");
+
+        listView.getItems().setAll(data.getItems());
+        listView.scrollTo(0);
+    }
+
     public void onPlayAgain(ActionEvent actionEvent) {
         Navigation.navigateTo("/screen/init.fxml");
     }
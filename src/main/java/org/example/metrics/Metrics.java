@@ -0,0 +1,104 @@
+package org.example.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide in-memory metrics, off unless -Dquiz.metrics=true (or {@link #setEnabled}).
+ *
+ * Every metric is a {@link Stat}: a count, a sum, a max and the last recorded value. Timers
+ * record nanoseconds, counters record 1 per event, gauges record the current level.
+ * When disabled every call returns after a single volatile read.
+ */
+public final class Metrics {
+
+    private static volatile boolean enabled = Boolean.getBoolean("quiz.metrics");
+    private static final Map<String, Cell> cells = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static boolean isEnabled() { return enabled; }
+    public static void setEnabled(boolean on) { enabled = on; }
+
+    /** Records a duration measured from {@code startNanos} (a System.nanoTime value) to now. */
+    public static void timeSince(String name, long startNanos) {
+        if (enabled) cell(name).record(System.nanoTime() - startNanos);
+    }
+
+    public static void increment(String name) {
+        if (enabled) cell(name).record(1);
+    }
+
+    /** Amount-style metric: bytes, rows, retries. */
+    public static void record(String name, long value) {
+        if (enabled) cell(name).record(value);
+    }
+
+    public static void gauge(String name, long level) {
+        if (enabled) cell(name).record(level);
+    }
+
+    /** Copy of all metrics, sorted by name. */
+    public static SortedMap<String, Stat> snapshot() {
+        SortedMap<String, Stat> out = new TreeMap<>();
+        cells.forEach((k, c) -> out.put(k, c.stat()));
+        return out;
+    }
+
+    public static void reset() {
+        cells.clear();
+    }
+
+    private static Cell cell(String name) {
+        return cells.computeIfAbsent(name, k -> new Cell());
+    }
+
+    /** Point-in-time values of one metric. */
+    public static final class Stat {
+        private final long count;
+        private final long sum;
+        private final long max;
+        private final long last;
+
+        Stat(long count, long sum, long max, long last) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.last = last;
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+        public long getMax() { return max; }
+        public long getLast() { return last; }
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " sum=" + sum + " mean=" + String.format("%.1f", getMean())
+                    + " max=" + max + " last=" + last;
+        }
+    }
+
+    private static final class Cell {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+        volatile long last;
+
+        void record(long v) {
+            count.incrementAndGet();
+            sum.addAndGet(v);
+            max.accumulateAndGet(v, Math::max);
+            last = v;
+        }
+
+        Stat stat() {
+            long n = count.get();
+            return new Stat(n, sum.get(), n == 0 ? 0 : max.get(), last);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events for the quiz pipeline, each mirrored into {@link Metrics}.
+ *
+ * Usage is always {@code X e = X.start(); ...; e.finish(...)}. With no recording running and
+ * metrics off, start/finish do no real work, so the calls can stay on hot paths.
+ * Record with e.g. {@code -XX:StartFlightRecording=filename=quiz.jfr}; the events are under
+ * the "Quiz" category in JMC.
+ */
+public final class QuizEvents {
+
+    private QuizEvents() {}
+
+    @Name("org.example.quiz.SparqlRequest")
+    @Label("SPARQL Request")
+    @Description("One SPARQL query including retries, against the endpoint or the local dataset")
+    @Category({"Quiz", "SPARQL"})
+    @StackTrace(false)
+    public static final class SparqlRequest extends Event {
+        @Label("Query") String query;
+        @Label("Source") String source;
+        @Label("HTTP Status") int status;
+        @Label("Body Size") @DataAmount long bytes;
+        @Label("Retries") int retries;
+        private transient long startNanos;
+
+        public static SparqlRequest start() {
+            SparqlRequest e = new SparqlRequest();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        public void finish(String query, String source, int status, long bytes, int retries) {
+            end();
+            if (shouldCommit()) {
+                this.query = query;
+                this.source = source;
+                this.status = status;
+                this.bytes = bytes;
+                this.retries = retries;
+                commit();
+            }
+            Metrics.timeSince("sparql.request", startNanos);
+            Metrics.record("sparql.bytes", bytes);
+            Metrics.record("sparql.retries", retries);
+            if (status / 100 != 2) Metrics.increment("sparql.failed");
+        }
+    }
+
+    @Name("org.example.quiz.SparqlParse")
+    @Label("SPARQL Parse")
+    @Description("Parsing a SPARQL JSON result; for streamed responses this includes reading the body")
+    @Category({"Quiz", "SPARQL"})
+    @StackTrace(false)
+    public static final class SparqlParse extends Event {
+        @Label("Query") String query;
+        @Label("Rows") int rows;
+        private transient long startNanos;
+
+        public static SparqlParse start() {
+            SparqlParse e = new SparqlParse();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        public void finish(String query, int rows) {
+            end();
+            if (shouldCommit()) {
+                this.query = query;
+                this.rows = rows;
+                commit();
+            }
+            Metrics.timeSince("sparql.parse", startNanos);
+        }
+    }
+
+    @Name("org.example.quiz.SparqlCacheLookup")
+    @Label("SPARQL Cache Lookup")
+    @Category({"Quiz", "SPARQL"})
+    @StackTrace(false)
+    public static final class SparqlCacheLookup extends Event {
+        @Label("Outcome") @Description("hit, stale (served while refreshing) or miss") String outcome;
+
+        public static void record(String outcome) {
+            SparqlCacheLookup e = new SparqlCacheLookup();
+            if (e.shouldCommit()) {
+                e.outcome = outcome;
+                e.commit();
+            }
+            Metrics.increment("sparql.cache." + outcome);
+        }
+    }
+
+    @Name("org.example.quiz.Preload")
+    @Label("Preload")
+    @Description("Fetching and merging a batch of facts and capital names")
+    @Category("Quiz")
+    @StackTrace(false)
+    public static final class Preload extends Event {
+        @Label("Pending Facts") int pending;
+        private transient long startNanos;
+
+        public static Preload start() {
+            Preload e = new Preload();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        public void finish(int pending) {
+            end();
+            if (shouldCommit()) {
+                this.pending = pending;
+                commit();
+            }
+            Metrics.timeSince("quiz.preload", startNanos);
+        }
+    }
+
+    @Name("org.example.quiz.QueueDepth")
+    @Label("Question Queue Depth")
+    @Category("Quiz")
+    @StackTrace(false)
+    public static final class QueueDepth extends Event {
+        @Label("Ready Questions") int ready;
+        @Label("Pending Facts") int pending;
+
+        /** True when a recording or the metrics registry would use the values. */
+        public static boolean wanted() {
+            return Metrics.isEnabled() || new QueueDepth().isEnabled();
+        }
+
+        public static void record(int ready, int pending) {
+            QueueDepth e = new QueueDepth();
+            if (e.shouldCommit()) {
+                e.ready = ready;
+                e.pending = pending;
+                e.commit();
+            }
+            Metrics.gauge("quiz.ready", ready);
+            Metrics.gauge("quiz.pending", pending);
+        }
+    }
+
+    @Name("org.example.quiz.Generate")
+    @Label("Question Generation")
+    @Category("Quiz")
+    @StackTrace(false)
+    public static final class Generate extends Event {
+        @Label("Country") String country;
+        @Label("Built") boolean built;
+        private transient long startNanos;
+
+        public static Generate start() {
+            Generate e = new Generate();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        public void finish(String country, boolean built) {
+            end();
+            if (shouldCommit()) {
+                this.country = country;
+                this.built = built;
+                commit();
+            }
+            Metrics.timeSince("quiz.generate", startNanos);
+        }
+    }
+
+    @Name("org.example.quiz.NextToRender")
+    @Label("Next Click To Render")
+    @Description("From the Next click to the following question being on screen")
+    @Category({"Quiz", "UI"})
+    @StackTrace(false)
+    public static final class NextToRender extends Event {
+        @Label("From Buffer") @Description("The question was already prefetched") boolean fromBuffer;
+        private transient long startNanos;
+
+        public static NextToRender start() {
+            NextToRender e = new NextToRender();
+            e.startNanos = System.nanoTime();
+            e.begin();
+            return e;
+        }
+
+        public void finish(boolean fromBuffer) {
+            end();
+            if (shouldCommit()) {
+                this.fromBuffer = fromBuffer;
+                commit();
+            }
+            Metrics.timeSince("ui.nextToRender", startNanos);
+        }
+    }
+}
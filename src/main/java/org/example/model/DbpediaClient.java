@@ -1,13 +1,44 @@
 package org.example.model;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 
 import java.net.URI;
@@ -16,20 +47,39 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 
 
+import org.example.metrics.Metrics;
+import org.example.metrics.QuizEvents;
 import org.example.model.asianCountry.CountryFact;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 public class DbpediaClient {
+    private static final Logger log = LoggerFactory.getLogger(DbpediaClient.class);
+
     public static final String DEFAULT_ENDPOINT = "https://dbpedia.org/sparql";
+
+    // projected variables, in the order the result readers hand them back
+    static final String[] FACT_VARS = {"country", "countryLabel", "capital", "capitalLabel", "population", "thumbnail"};
+    static final String[] CAPITAL_VARS = {"capitalLabel"};
+    static final String[] COUNT_VARS = {"n"};
     
+    // primary endpoint: key for the cache and the local dataset
     private final String endpoint;
+    // equivalent endpoints with health and circuit breakers; requests go to the healthiest
+    private final EndpointPool endpoints;
     private final HttpClient http;
     private final Duration requestTimeout;
     private final int maxRetries;
     private final Random rnd = new Random();
+    // when set, queries run against this in-process copy instead of the endpoint
+    private final LocalDataset local;
+    // result cache for remote queries, may be null
+    private SparqlCache cache;
+    // result format asked for per kind of query, from measured bytes and parse CPU
+    private final FormatChooser formats = FormatChooser.fromSystemProperties();
+    // ask for gzip/deflate bodies; -Ddbpedia.compression=false turns it off
+    private final boolean compress = Boolean.parseBoolean(System.getProperty("dbpedia.compression", "true"));
     
     public DbpediaClient() {
         this(DEFAULT_ENDPOINT, Duration.ofSeconds(12),2);
@@ -37,8 +87,23 @@ public class DbpediaClient {
 
 
     public DbpediaClient(String endpoint, Duration timeout, int maxRetries) {
-        this.endpoint = Objects.requireNonNull(endpoint);
+        this(endpoint, timeout, maxRetries, null);
+    }
+
+    public DbpediaClient(String endpoint, Duration timeout, int maxRetries, LocalDataset local) {
+        this(List.of(Objects.requireNonNull(endpoint)), timeout, maxRetries, local);
+    }
+
+    /**
+     * Client over equivalent endpoints, the first being preferred. With more than one, a request
+     * that is slower than the recent p95 is also sent to the next healthiest endpoint and the
+     * first answer wins; failed attempts are retried on another endpoint.
+     */
+    public DbpediaClient(List<String> endpoints, Duration timeout, int maxRetries, LocalDataset local) {
         this.requestTimeout = timeout == null ? Duration.ofSeconds(12) : timeout;
+        this.endpoints = new EndpointPool(endpoints, requestTimeout.dividedBy(4));
+        this.endpoint = this.endpoints.primary();
+        this.local = local;
         this.maxRetries = Math.max(0, maxRetries);
         this.http = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(8))
@@ -46,172 +111,855 @@ public class DbpediaClient {
                 .build();
     }
 
+    /**
+     * Default client, switched to a local dataset when -Ddbpedia.local is set.
+     * -Ddbpedia.endpoints=url1,url2,... replaces the public endpoint with a list of equivalent ones.
+     */
+    public static DbpediaClient createDefault() {
+        List<String> urls = new ArrayList<>();
+        for (String u : System.getProperty("dbpedia.endpoints", DEFAULT_ENDPOINT).split(",")) {
+            if (!u.isBlank()) urls.add(u.trim());
+        }
+        if (urls.isEmpty()) urls.add(DEFAULT_ENDPOINT);
+        DbpediaClient client = new DbpediaClient(urls, Duration.ofSeconds(12), 2, LocalDataset.fromSystemProperty());
+        if (!client.isLocal() && !Boolean.getBoolean("dbpedia.cache.disabled")) {
+            client.setCache(SparqlCache.createDefault());
+        }
+        return client;
+    }
+
+    public void setCache(SparqlCache cache) {
+        this.cache = cache;
+    }
+
+    public boolean isLocal() {
+        return local != null;
+    }
+
+    /** Endpoints with their smoothed latency and breaker state, for logs. */
+    public String endpointHealth() {
+        return endpoints.toString();
+    }
+
+    /** Bytes on the wire and parse CPU per result format and kind of query, for logs. */
+    public String formatCosts() {
+        return formats.toString();
+    }
+
     ///API
 
-    public List<CountryFact> getRandomAsianCountryFacts(int limit) throws IOException, InterruptedException {
-        String sparql = """
-                PREFIX dbo:  <http://dbpedia.org/ontology/>
-                        PREFIX dbp:  <http://dbpedia.org/property/>
-                        PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
-                        PREFIX dct:  <http://purl.org/dc/terms/>
-                        PREFIX dbc:  <http://dbpedia.org/resource/Category:>
-                
-                        SELECT DISTINCT ?country ?countryLabel ?capital ?capitalLabel ?population ?thumbnail WHERE {
-                          # Asian countries (DBpedia category is more complete than dbo:continent)
-                          ?country a dbo:Country ;
-                                   dct:subject dbc:Countries_in_Asia .
-                
-                          # English country label
-                          ?country rdfs:label ?countryLabel .
-                          FILTER ( langMatches(lang(?countryLabel), "EN") )
-                
-                          # Exclude dissolved countries (Virtuoso-safe way)
-                          OPTIONAL { ?country dbo:dissolutionYear ?_diss }
-                          FILTER ( !BOUND(?_diss) )
-                
-                          # Capital (accept dbo:capital or dbp:capital that points to a resource)
-                          OPTIONAL {
-                            { ?country dbo:capital ?capital }
-                            UNION
-                            { ?country dbp:capital ?capital . FILTER( isIRI(?capital) ) }
-                
-                            ?capital rdfs:label ?capitalLabel .
-                            FILTER ( langMatches(lang(?capitalLabel), "EN") )
-                          }
-                
-                          # Optional extras
-                          OPTIONAL { ?country dbo:populationTotal ?population }
-                          OPTIONAL { ?country dbo:thumbnail ?thumbnail }
-                        }
-                        ORDER BY RAND()
-                """.formatted(Math.max(1, limit));
+    private static final String PREFIXES = """
+            PREFIX dbo:  <http://dbpedia.org/ontology/>
+            PREFIX dbp:  <http://dbpedia.org/property/>
+            PREFIX dbr:  <http://dbpedia.org/resource/>
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+            PREFIX dct:  <http://purl.org/dc/terms/>
+            PREFIX dbc:  <http://dbpedia.org/resource/Category:>
+            """;
+
+    private static final String FACT_SELECT = """
+            SELECT DISTINCT ?country ?countryLabel ?capital ?capitalLabel ?population ?thumbnail WHERE {
+              # Asian countries (DBpedia category is more complete than dbo:continent)
+              ?country a dbo:Country ;
+                       dct:subject dbc:Countries_in_Asia .
+
+              # English country label
+              ?country rdfs:label ?countryLabel .
+              FILTER ( langMatches(lang(?countryLabel), "EN") )
+
+              # Exclude dissolved countries (Virtuoso-safe way)
+              OPTIONAL { ?country dbo:dissolutionYear ?_diss }
+              FILTER ( !BOUND(?_diss) )
+
+              # Capital (accept dbo:capital or dbp:capital that points to a resource)
+              OPTIONAL {
+                { ?country dbo:capital ?capital }
+                UNION
+                { ?country dbp:capital ?capital . FILTER( isIRI(?capital) ) }
 
-        JSONObject json = executeSelect(sparql);
-        return parseCountryFacts(json);
+                ?capital rdfs:label ?capitalLabel .
+                FILTER ( langMatches(lang(?capitalLabel), "EN") )
+              }
+
+              # Optional extras
+              OPTIONAL { ?country dbo:populationTotal ?population }
+              OPTIONAL { ?country dbo:thumbnail ?thumbnail }
+            }
+            """;
+
+    private static final String CAPITAL_SELECT = """
+            SELECT DISTINCT ?capitalLabel WHERE {
+              # Use category for Asia instead of dbo:continent (more complete on DBpedia)
+              ?country a dbo:Country ;
+                       dct:subject dbc:Countries_in_Asia .
+
+              # Accept dbo:capital or dbp:capital (skip literals)
+              { ?country dbo:capital ?capital }
+              UNION
+              { ?country dbp:capital ?capital . FILTER(isIRI(?capital)) }
+
+              ?capital rdfs:label ?capitalLabel .
+              FILTER(langMatches(lang(?capitalLabel), "EN"))
+            }
+            """;
+
+    // Pages are cut in a stable order so every page is a reusable (and cacheable) slice;
+    // randomness comes from which page is fetched and from sampling on the client.
+    static final SparqlTemplate FACT_PAGE = new SparqlTemplate("facts",
+            PREFIXES + FACT_SELECT + "ORDER BY ?country ?capital ?thumbnail\n");
+    static final SparqlTemplate FACT_COUNT = new SparqlTemplate("count facts",
+            PREFIXES + "SELECT (COUNT(*) AS ?n) WHERE {\n" + FACT_SELECT + "}\n");
+    static final SparqlTemplate CAPITAL_PAGE = new SparqlTemplate("capitals",
+            PREFIXES + CAPITAL_SELECT + "ORDER BY ?capitalLabel\n");
+    static final SparqlTemplate CAPITAL_COUNT = new SparqlTemplate("count capitals",
+            PREFIXES + "SELECT (COUNT(*) AS ?n) WHERE {\n" + CAPITAL_SELECT + "}\n");
+    private static final SparqlTemplate[] TEMPLATES = {FACT_PAGE, FACT_COUNT, CAPITAL_PAGE, CAPITAL_COUNT};
+
+    // a Retry-After longer than this fails the call instead of holding it
+    static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(30);
+
+    // local queries (and the first load, a full download) block; keep them off the common pool
+    private static final ExecutorService LOCAL_QUERIES = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "local-sparql");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // rows fetched per requested row, to leave room for sampling and rows dropped while parsing
+    private static final int PAGE_OVERSAMPLE = 2;
+
+    private final Map<String, Long> rowCounts = new ConcurrentHashMap<>();
+    private final SingleFlight<String> inFlight = new SingleFlight<>();
+
+    public List<CountryFact> getRandomAsianCountryFacts(int limit) throws IOException, InterruptedException {
+        return samplePages(FACT_PAGE, FACT_COUNT, Math.max(1, limit), DbpediaClient::parseCountryFacts);
     }
 
+    /**
+     * Capital names alone. The fact query brings every country's capital as well; this one is
+     * for callers that want names of capitals whose country is not among their facts.
+     */
     public List<String> getAsianCapitalName(int limit) throws IOException, InterruptedException {
-        String sparql = """
-                PREFIX dbo:  <http://dbpedia.org/ontology/>
-                        PREFIX dbp:  <http://dbpedia.org/property/>
-                        PREFIX dbr:  <http://dbpedia.org/resource/>
-                        PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
-                        PREFIX dct:  <http://purl.org/dc/terms/>
-                        PREFIX dbc:  <http://dbpedia.org/resource/Category:>
-                
-                        SELECT DISTINCT ?capitalLabel WHERE {
-                          # Use category for Asia instead of dbo:continent (more complete on DBpedia)
-                          ?country a dbo:Country ;
-                                   dct:subject dbc:Countries_in_Asia .
-                
-                          # Accept dbo:capital or dbp:capital (skip literals)
-                          { ?country dbo:capital ?capital }
-                          UNION
-                          { ?country dbp:capital ?capital . FILTER(isIRI(?capital)) }
-                
-                          ?capital rdfs:label ?capitalLabel .
-                          FILTER(langMatches(lang(?capitalLabel), "EN"))
-                        }
-                        ORDER BY RAND()
-                """.formatted(Math.max(1, limit));
+        return samplePages(CAPITAL_PAGE, CAPITAL_COUNT, Math.max(1, limit), DbpediaClient::parseCapitalNames);
+    }
+
+    public CompletableFuture<List<CountryFact>> getRandomAsianCountryFactsAsync(int limit) {
+        return samplePagesAsync(FACT_PAGE, FACT_COUNT, Math.max(1, limit), DbpediaClient::parseCountryFacts);
+    }
+
+    public CompletableFuture<List<String>> getAsianCapitalNameAsync(int limit) {
+        return samplePagesAsync(CAPITAL_PAGE, CAPITAL_COUNT, Math.max(1, limit), DbpediaClient::parseCapitalNames);
+    }
+
+    /**
+     * Facts of the given countries (by URI) in one query, e.g. to re-read countries that changed.
+     *
+     * @throws IllegalArgumentException when one of them is not an absolute IRI
+     */
+    public List<CountryFact> getAsianCountryFacts(Collection<String> countryUris) throws IOException, InterruptedException {
+        if (countryUris.isEmpty()) return List.of();
+        String values = "\n  " + SparqlTemplate.values("country", countryUris);
+        int where = FACT_SELECT.indexOf("WHERE {") + "WHERE {".length();
+        String sparql = PREFIXES + FACT_SELECT.substring(0, where) + values + FACT_SELECT.substring(where);
+        return executeSelect(sparql, DbpediaClient::parseCountryFacts);
+    }
 
-        JSONObject json = executeSelect(sparql);
-        JSONArray rows = json.getJSONObject("results").getJSONArray("bindings");
+    /**
+     * Pulls what changed upstream into the local dataset, see {@link LocalDataset#refreshFrom};
+     * null when the client is not local. Row counts are re-read once countries came or went.
+     *
+     * Its queries go out like any remote one (throttle, retry budget, failover, hedging,
+     * timeouts) but past the cache, in the format the dataset asks for.
+     */
+    public LocalDataset.Refresh refreshLocal() throws IOException, InterruptedException {
+        if (local == null) return null;
+        LocalDataset.Refresh r;
+        try {
+            r = local.refreshFrom((sparql, format) -> fetch(sparql, format, InputStream::readAllBytes, false));
+        } catch (RuntimeException e) {
+            throw new IOException("Local dataset refresh failed", e);
+        }
+        if (!r.isEmpty()) rowCounts.clear();
+        return r;
+    }
+
+    /**
+     * Waits for a future from the async API and rethrows its failure the way the
+     * blocking methods would.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Picks {@code limit} random rows of a query without ORDER BY RAND() on the server.
+     * Starts at a random page of the stably ordered result and reservoir-samples the rows
+     * of the pages it fetches, moving on to the next page (wrapping around) only when the
+     * first one is short.
+     */
+    private <T> List<T> samplePages(SparqlTemplate pageTemplate, SparqlTemplate countQuery, int limit,
+                                    ResultParser<List<T>> parser) throws IOException, InterruptedException {
+        int pageSize = limit * PAGE_OVERSAMPLE;
+        long pages = pageCount(countRows(countQuery), pageSize);
+        long page = randomPage(pages);
+
+        Reservoir<T> reservoir = new Reservoir<>(limit, rnd);
+        for (long fetched = 0; fetched < pages && reservoir.seen < pageSize; fetched++) {
+            List<T> rows = executeSelect(pageQuery(pageTemplate, pageSize, pages, page + fetched), parser);
+            reservoir.offerAll(rows);
+            if (rows.isEmpty()) break;
+        }
+        return reservoir.shuffled();
+    }
+
+    private <T> CompletableFuture<List<T>> samplePagesAsync(SparqlTemplate pageTemplate, SparqlTemplate countQuery,
+                                                            int limit, ResultParser<List<T>> parser) {
+        int pageSize = limit * PAGE_OVERSAMPLE;
+        return countRowsAsync(countQuery).thenCompose(total -> {
+            long pages = pageCount(total, pageSize);
+            return fetchPagesAsync(pageTemplate, parser, pageSize, pages, randomPage(pages), 0,
+                    new Reservoir<>(limit, rnd));
+        });
+    }
+
+    private <T> CompletableFuture<List<T>> fetchPagesAsync(SparqlTemplate pageTemplate, ResultParser<List<T>> parser,
+                                                           int pageSize, long pages, long page, long fetched,
+                                                           Reservoir<T> reservoir) {
+        return executeSelectAsync(pageQuery(pageTemplate, pageSize, pages, page + fetched), parser)
+                .thenCompose(rows -> {
+                    reservoir.offerAll(rows);
+                    if (rows.isEmpty() || reservoir.seen >= pageSize || fetched + 1 >= pages) {
+                        return CompletableFuture.completedFuture(reservoir.shuffled());
+                    }
+                    return fetchPagesAsync(pageTemplate, parser, pageSize, pages, page, fetched + 1, reservoir);
+                });
+    }
+
+    private static long pageCount(long total, int pageSize) {
+        return Math.max(1, (total + pageSize - 1) / pageSize);
+    }
+
+    private long randomPage(long pages) {
+        return pages > 1 ? Math.floorMod(rnd.nextLong(), pages) : 0;
+    }
+
+    private static String pageQuery(SparqlTemplate pageTemplate, int pageSize, long pages, long page) {
+        return pageTemplate.page(pageSize, (page % pages) * pageSize);
+    }
+
+    /** Fixed-size uniform sample over rows offered one page at a time. */
+    private static final class Reservoir<T> {
+        private final List<T> items;
+        private final int limit;
+        private final Random rnd;
+        int seen;
+
+        Reservoir(int limit, Random rnd) {
+            this.items = new ArrayList<>(limit);
+            this.limit = limit;
+            this.rnd = rnd;
+        }
+
+        void offerAll(List<T> rows) {
+            for (T row : rows) {
+                seen++;
+                if (items.size() < limit) {
+                    items.add(row);
+                } else {
+                    int j = rnd.nextInt(seen);
+                    if (j < limit) items.set(j, row);
+                }
+            }
+        }
+
+        List<T> shuffled() {
+            Collections.shuffle(items, rnd);
+            return items;
+        }
+    }
+
+    /** Row count of a COUNT query, remembered for the lifetime of the client. */
+    private long countRows(SparqlTemplate countQuery) throws IOException, InterruptedException {
+        String sparql = countQuery.text();
+        Long known = rowCounts.get(sparql);
+        if (known != null) return known;
+        long n = executeSelect(sparql, DbpediaClient::parseCount);
+        rowCounts.put(sparql, n);
+        return n;
+    }
+
+    private CompletableFuture<Long> countRowsAsync(SparqlTemplate countQuery) {
+        String sparql = countQuery.text();
+        Long known = rowCounts.get(sparql);
+        if (known != null) return CompletableFuture.completedFuture(known);
+        return executeSelectAsync(sparql, DbpediaClient::parseCount).thenApply(n -> {
+            rowCounts.put(sparql, n);
+            return n;
+        });
+    }
+
+    static long parseCount(InputStream in) throws IOException {
+        long[] out = {0};
+        ResultFormat.read(in, COUNT_VARS, row -> {
+            Long v = SparqlJsonReader.parseDigits(row[0]);
+            if (v != null) out[0] = v;
+        });
+        return out[0];
+    }
+
+    static List<String> parseCapitalNames(InputStream in) throws IOException {
         List<String> out = new ArrayList<>();
-        for(int i=0; i<rows.length(); i++) {
-            JSONObject row = rows.getJSONObject(i);
-            String label = getBindingValue(row, "capitalLabel");
+        ResultFormat.read(in, CAPITAL_VARS, row -> {
+            String label = row[0];
             if(label != null && !label.isBlank()){
                 out.add(label);
             }
+        });
+        return out;
+    }
+
+    /** Consumes a SPARQL results stream in any {@link ResultFormat}. */
+    @FunctionalInterface
+    interface ResultParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+
+    // Identical queries issued while one is in flight share its HTTP call and parsed result.
+    // A query text always maps to the same parser, so the shared value has the caller's type.
+    private <T> T executeSelect(String sparql, ResultParser<T> parser) throws IOException, InterruptedException {
+        return inFlight.run(sparql, () -> select(sparql, parser));
+    }
+
+    private <T> CompletableFuture<T> executeSelectAsync(String sparql, ResultParser<T> parser) {
+        return inFlight.runAsync(sparql, () -> selectAsync(sparql, parser));
+    }
+
+    private <T> T select(String sparql, ResultParser<T> parser) throws IOException, InterruptedException {
+        if (local != null) {
+            return parse(sparql, parser, new ByteArrayInputStream(localSelect(sparql)), false);
         }
-        return  out;
+
+        if (cache != null) {
+            SparqlCache.Result r = cache.get(endpoint, sparql, () -> fetch(sparql, null, InputStream::readAllBytes, false));
+            return parse(sparql, parser, new ByteArrayInputStream(r.body), r.loaded);
+        }
+        return fetch(sparql, null, parser, true);
     }
 
-    private JSONObject executeSelect(String sparql) throws IOException, InterruptedException {
-        String body = "query=" + URLEncoder.encode(sparql, StandardCharsets.UTF_8)
-                + "&format=" + URLEncoder.encode("application/sparql-results+json", StandardCharsets.UTF_8);
+    /**
+     * @param offTheWire the body was just received in the format the chooser asked for; local
+     *                   and cached bodies say nothing about what a format costs on the wire
+     */
+    private <T> T parse(String sparql, ResultParser<T> parser, InputStream in, boolean offTheWire)
+            throws IOException {
+        QuizEvents.SparqlParse ev = QuizEvents.SparqlParse.start();
+        if (!in.markSupported()) in = new BufferedInputStream(in);
+        ResultFormat format = ResultFormat.detect(in);
+        long cpu = cpuNanos();
+        T result = parser.parse(in);
+        if (offTheWire) formats.recordParse(sparql, format, cpuNanos() - cpu);
+        ev.finish(describe(sparql), result instanceof List<?> rows ? rows.size() : 1);
+        return result;
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** CPU time of this thread, so parse figures leave out waiting for a streamed body. */
+    private static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /** Short label for events and logs: query kind plus its page, e.g. "facts LIMIT 32 OFFSET 64". */
+    static String describe(String sparql) {
+        for (SparqlTemplate t : TEMPLATES) {
+            if (t.matches(sparql)) return t.describe(sparql);
+        }
+        String kind = sparql.contains("(COUNT(*)") ? "count " : "";
+        kind += sparql.contains("?thumbnail") ? "facts" : "capitals";
+        int page = sparql.lastIndexOf("LIMIT ");
+        return page < 0 ? kind : kind + " " + sparql.substring(page).strip().replace('\n', ' ');
+    }
+
+    /**
+     * Runs a query on the local dataset, loading it first if needed (a full download on first
+     * use); Jena failures come out as IOException, as remote ones do.
+     */
+    private byte[] localSelect(String sparql) throws IOException {
+        QuizEvents.SparqlRequest ev = QuizEvents.SparqlRequest.start();
+        byte[] body;
+        try {
+            local.ensureLoaded(endpoint);
+            body = local.select(sparql);
+        } catch (RuntimeException e) {
+            ev.finish(describe(sparql), "local", -1, 0, 0);
+            throw new IOException("Local dataset query failed", e);
+        }
+        ev.finish(describe(sparql), "local", 200, body.length, 0);
+        return body;
+    }
+
+    private <T> CompletableFuture<T> selectAsync(String sparql, ResultParser<T> parser) {
+        if (local != null) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return localSelect(sparql);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, LOCAL_QUERIES).thenApply(b -> parseInStage(sparql, parser, b, false));
+        }
+        if (cache != null) {
+            return cache.getAsync(endpoint, sparql, () -> fetchAsync(sparql, null))
+                    .thenApply(r -> parseInStage(sparql, parser, r.body, r.loaded));
+        }
+        return fetchAsync(sparql, null).thenApply(b -> parseInStage(sparql, parser, b, true));
+    }
+
+    /** {@link #parse} for a CompletableFuture stage, which cannot throw IOException. */
+    private <T> T parseInStage(String sparql, ResultParser<T> parser, byte[] body, boolean offTheWire) {
+        try {
+            return parse(sparql, parser, new ByteArrayInputStream(body), offTheWire);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private HttpRequest buildRequest(String url, String sparql, ResultFormat format) {
+        // Virtuoso goes by the format parameter, other servers by Accept
+        String body = "query=" + encodeQuery(sparql) + "&format=" + format.encodedMediaType;
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(endpoint))
-                .header("Accept","application/sparql-results+json")
+        HttpRequest.Builder b = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Accept", format.mediaType)
                 .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
                 .timeout(requestTimeout)
-                .POST(HttpRequest.BodyPublishers.ofString(body))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (compress) b.header("Accept-Encoding", "gzip, deflate");
+        return b.build();
+    }
+
+    /** Form-encoded query text; template queries reuse the encoding done once for their text. */
+    private static String encodeQuery(String sparql) {
+        for (SparqlTemplate t : TEMPLATES) {
+            if (t.matches(sparql)) return t.encode(sparql);
+        }
+        return URLEncoder.encode(sparql, StandardCharsets.UTF_8);
+    }
+
+    /** The body with its gzip or deflate content coding undone as it is read. */
+    static InputStream decoded(InputStream body, HttpHeaders headers) throws IOException {
+        String coding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+        switch (coding) {
+            case "identity", "":
+                return body;
+            case "gzip", "x-gzip":
+                return new GZIPInputStream(body, 8192);
+            case "deflate":
+                // meant to be zlib-wrapped, but some servers send a raw deflate stream
+                InputStream in = body.markSupported() ? body : new BufferedInputStream(body, 2);
+                in.mark(2);
+                int cmf = in.read();
+                int flg = in.read();
+                in.reset();
+                boolean zlib = (cmf & 0x0F) == 8 && flg >= 0 && ((cmf << 8) | flg) % 31 == 0;
+                return inflating(in, new Inflater(!zlib));
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + coding);
+        }
+    }
+
+    /** Inflates {@code in} and frees the Inflater's native memory on close. */
+    private static InputStream inflating(InputStream in, Inflater inflater) {
+        return new InflaterInputStream(in, inflater, 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /** {@link #decoded(InputStream, HttpHeaders)} for a body received whole. */
+    static byte[] decoded(byte[] body, HttpHeaders headers) throws IOException {
+        if (headers.firstValue("Content-Encoding").isEmpty()) return body;
+        try (InputStream in = decoded(new ByteArrayInputStream(body), headers)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * @param fixed  result format to ask for; null lets the format chooser pick, and learn from
+     *               the answer
+     * @param record whether the parse CPU goes to the format chooser (not for raw reads into the cache)
+     */
+    private <T> T fetch(String sparql, ResultFormat fixed, ResultParser<T> parser, boolean record)
+            throws IOException, InterruptedException {
+        if (endpoints.size() > 1) {
+            // hedging races whole bodies, so the streaming parse is given up for it
+            return parse(sparql, parser, new ByteArrayInputStream(await(fetchAsync(sparql, fixed))), record);
+        }
+        QuizEvents.SparqlRequest ev = QuizEvents.SparqlRequest.start();
+        int status = -1;
+        CountingInputStream counted = null;
+        RetryBudget budget = RetryBudget.shared();
+        budget.deposit();
+        ResultFormat format = fixed != null ? fixed : formats.choose(sparql);
 
         int attempt = 0;
-        while(true) {
-            try{
-                HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
-                int status = resp.statusCode();
-                if(status >= 200 && status < 300) {
-                    System.out.println("Fetch data success!");
-                    System.out.println(new JSONObject(resp.body()));
-                    return new JSONObject(resp.body());
-                }else if(status == 429 || status > 500) {
-                    System.out.println("Try again");
-                    if (attempt++ < maxRetries) {
-                        backoff(attempt);
+        try {
+            while(true) {
+                status = -1;
+                EndpointPool.Endpoint target = endpoints.acquire(null);
+                SparqlThrottle.Permit permit = null;
+                try{
+                    if (target == null) throw new IOException("SPARQL endpoint unavailable: circuit open");
+                    permit = SparqlThrottle.forEndpoint(target.url).acquire(requestTimeout.toNanos());
+                    long sent = System.nanoTime();
+                    HttpResponse<InputStream> resp = http.send(buildRequest(target.url, sparql, format), HttpResponse.BodyHandlers.ofInputStream());
+                    status = resp.statusCode();
+                    long retryAfter = retryAfterNanos(resp.headers());
+                    if (retryable(status)) endpoints.failure(target);
+                    else endpoints.success(target, System.nanoTime() - sent);
+                    // counted as it comes off the wire, decompressed as the parser reads it;
+                    // the permit is held until the body is read, as on the async path
+                    try (InputStream wire = counted = new CountingInputStream(resp.body());
+                         InputStream in = decoded(wire, resp.headers())) {
+                        if(status >= 200 && status < 300) {
+                            log.debug("SPARQL {}: HTTP {} after {} retries", describe(sparql), status, attempt);
+                            T result;
+                            if (log.isTraceEnabled()) {
+                                byte[] body = in.readAllBytes();
+                                log.trace("SPARQL response body: {}", new String(body, StandardCharsets.UTF_8));
+                                result = parse(sparql, parser, new ByteArrayInputStream(body), record);
+                            } else {
+                                result = parse(sparql, parser, in, record);
+                            }
+                            permit.release(outcomeOf(status), retryAfter);
+                            recordWire(sparql, resp.headers(), counted.count, fixed == null);
+                            return result;
+                        }
+                        long delay = retryDelayMillis(attempt + 1, retryAfter);
+                        if (retryable(status) && attempt < maxRetries && delay >= 0 && retryAllowed(budget)) {
+                            permit.release(outcomeOf(status), retryAfter);
+                            attempt++;
+                            log.debug("SPARQL {}: HTTP {}, retry {} of {} in {} ms", describe(sparql), status, attempt, maxRetries, delay);
+                            Thread.sleep(delay);
+                            continue;
+                        }
+                        String snippet = errorSnippet(in);
+                        permit.release(outcomeOf(status), retryAfter);
+                        throw new HttpStatusException(status, snippet);
+                    }
+                }catch(HttpStatusException e) {
+                    // the status decided already whether to retry
+                    throw e;
+                }catch(SparqlThrottle.AdmissionTimeoutException e) {
+                    // our own queue was full, not the endpoint's fault; it will not drain by retrying
+                    endpoints.notSent(target);
+                    throw e;
+                }catch(IOException e) {
+                    // the request failed, or the body did while being read (no-op when released)
+                    if (permit != null) permit.release(outcomeOf(e), 0);
+                    if (status == -1 && target != null) endpoints.failure(target);
+                    if(attempt < maxRetries && retryAllowed(budget)) {
+                        attempt++;
+                        log.debug("SPARQL {}: {}, retry {} of {}", describe(sparql), e.toString(), attempt, maxRetries);
+                        Thread.sleep(backoffMillis(attempt));
                         continue;
                     }
-                    throw new IOException("DBpedia HTTP " + status + ": " + resp.body());
-                }else{
-                    throw new IOException("DBpedia HTTP " + status + ": " + resp.body());
+                    throw e;
+                } finally {
+                    // interrupted while waiting for the answer: give the slot back (no-op when released)
+                    if (permit != null) permit.release(SparqlThrottle.Outcome.CANCELLED, 0);
                 }
-            }catch(IOException | InterruptedException e) {
-                if(attempt++ < maxRetries) {
-                    backoff(attempt);
-                    continue;
-                }
-                throw e;
             }
+        } finally {
+            ev.finish(describe(sparql), "http", status, counted == null ? 0 : counted.count, attempt);
         }
     }
 
-    private void backoff(int attempt) throws InterruptedException {
-        long sleep = (long)Math.min(4000, 300*Math.pow(2, attempt - 1)) + rnd.nextInt(200);
-        Thread.sleep(sleep);
+    /** Non-2xx answer; {@link #retryable} tells whether asking again can help. */
+    private static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpStatusException(int status, String body) {
+            super("DBpedia HTTP " + status + ": " + body);
+            this.status = status;
+        }
     }
 
-    private static String getBindingValue(JSONObject row, String var) {
-        if (!row.has(var)) return null;
-        JSONObject cell = row.getJSONObject(var);
-        return cell.optString("value", null);
+    /** Counts body bytes as the streaming parser pulls them. */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) { super(in); }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /**
+     * Async counterpart of {@link #fetch}: the body is received with sendAsync and retries
+     * are scheduled on a delayed executor instead of sleeping a thread.
+     */
+    private CompletableFuture<byte[]> fetchAsync(String sparql, ResultFormat fixed) {
+        QuizEvents.SparqlRequest ev = QuizEvents.SparqlRequest.start();
+        // [last status, attempts] as seen by the retry chain
+        int[] outcome = {-1, 0};
+        RetryBudget.shared().deposit();
+        return sendAsync(sparql, fixed, 0, outcome).whenComplete((body, err) -> {
+            if (err != null) {
+                ev.finish(describe(sparql), "http", outcome[0], 0, outcome[1]);
+            } else {
+                ev.finish(describe(sparql), "http", outcome[0], body.length, outcome[1]);
+                if (log.isTraceEnabled()) {
+                    log.trace("SPARQL response body: {}", new String(body, StandardCharsets.UTF_8));
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<byte[]> sendAsync(String sparql, ResultFormat fixed, int attempt, int[] outcome) {
+        return hedgedSendAsync(sparql, fixed)
+                .handle((resp, err) -> {
+                    Throwable failure = unwrap(err);
+                    outcome[0] = resp == null ? -1 : resp.statusCode();
+                    outcome[1] = attempt;
+                    if (failure == null) {
+                        int status = resp.statusCode();
+                        if (status >= 200 && status < 300) {
+                            return CompletableFuture.completedFuture(resp.body());
+                        }
+                        failure = new HttpStatusException(status, errorSnippet(resp.body()));
+                        if (!retryable(status)) {
+                            return CompletableFuture.<byte[]>failedFuture(failure);
+                        }
+                    } else if (failure instanceof SparqlThrottle.AdmissionTimeoutException) {
+                        // the host's queue is full; retrying would only queue again
+                        return CompletableFuture.<byte[]>failedFuture(failure);
+                    }
+                    // the first retry goes straight to another endpoint when there is one
+                    long delay = attempt == 0 && endpoints.size() > 1 ? 0
+                            : retryDelayMillis(attempt + 1, resp == null ? 0 : retryAfterNanos(resp.headers()));
+                    if (attempt >= maxRetries || delay < 0 || !retryAllowed(RetryBudget.shared())) {
+                        return CompletableFuture.<byte[]>failedFuture(failure);
+                    }
+                    log.debug("SPARQL request failed ({}), retry {} of {} in {} ms", failure.toString(), attempt + 1, maxRetries, delay);
+                    Executor later = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                    return CompletableFuture.supplyAsync(() -> attempt + 1, later)
+                            .thenCompose(next -> sendAsync(sparql, fixed, next, outcome));
+                })
+                .thenCompose(f -> f);
+    }
+
+    /**
+     * One attempt. It goes to the healthiest endpoint; if there is another one and no answer has
+     * come by the hedge delay (recent p95), the same request is sent there too. The first
+     * response that settles the attempt wins and the other request is cancelled: a success or
+     * non-retryable status at once, otherwise the last response or error once both are in.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> hedgedSendAsync(String sparql, ResultFormat fixed) {
+        EndpointPool.Endpoint first = endpoints.acquire(null);
+        if (first == null) {
+            return CompletableFuture.failedFuture(new IOException("SPARQL endpoint unavailable: circuit open"));
+        }
+        Hedge hedge = new Hedge();
+        sendLeg(sparql, fixed, first, hedge, false);
+        if (endpoints.size() > 1) {
+            CompletableFuture.delayedExecutor(endpoints.hedgeDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (hedge.result.isDone()) return;
+                EndpointPool.Endpoint second = endpoints.acquire(first);
+                if (second == null) return;
+                Metrics.increment("sparql.hedge.sent");
+                log.debug("SPARQL {}: no answer from {} yet, hedging to {}", describe(sparql), first, second);
+                sendLeg(sparql, fixed, second, hedge, true);
+            });
+        }
+        return hedge.result;
     }
 
+    /** Requests of one hedged attempt. */
+    private static final class Hedge {
+        final CompletableFuture<HttpResponse<byte[]>> result = new CompletableFuture<>();
+        final List<CompletableFuture<?>> legs = new CopyOnWriteArrayList<>();
+        final AtomicInteger running = new AtomicInteger();
+
+        Hedge() {
+            result.whenComplete((r, e) -> legs.forEach(leg -> leg.cancel(true)));
+        }
+    }
 
-    private static Long getBindingLong(JSONObject row, String var) {
-        String v = getBindingValue(row, var);
-        if (v == null) return null;
+    private void sendLeg(String sparql, ResultFormat fixed, EndpointPool.Endpoint target, Hedge hedge, boolean isHedge) {
+        hedge.running.incrementAndGet();
+        long[] sent = {0};
+        // waits for the host's throttle first; cancelling it while queued just drops the request
+        CompletableFuture<SparqlThrottle.Permit> admitted =
+                SparqlThrottle.forEndpoint(target.url).acquireAsync(requestTimeout.toNanos());
+        ResultFormat format = fixed != null ? fixed : formats.choose(sparql);
+        hedge.legs.add(admitted);
+        CompletableFuture<HttpResponse<byte[]>> leg = admitted.thenCompose(permit -> {
+            sent[0] = System.nanoTime();
+            CompletableFuture<HttpResponse<byte[]>> f = http.sendAsync(buildRequest(target.url, sparql, format),
+                    info -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                            raw -> received(sparql, info, raw, fixed == null)));
+            hedge.legs.add(f);
+            if (hedge.result.isDone()) f.cancel(true);
+            return f.whenComplete((resp, err) -> permit.release(
+                    resp != null ? outcomeOf(resp.statusCode()) : outcomeOf(unwrap(err)),
+                    resp != null ? retryAfterNanos(resp.headers()) : 0));
+        });
+        if (hedge.result.isDone()) admitted.cancel(false);
+        leg.whenComplete((resp, err) -> {
+            long took = sent[0] == 0 ? 0 : System.nanoTime() - sent[0];
+            boolean last = hedge.running.decrementAndGet() == 0;
+            if (hedge.result.isDone()) {
+                // lost the race; what it took so far is still a hint about the endpoint
+                endpoints.abandoned(target, took);
+                return;
+            }
+            if (err == null && !retryable(resp.statusCode())) {
+                endpoints.success(target, took);
+                if (hedge.result.complete(resp) && isHedge) Metrics.increment("sparql.hedge.won");
+                return;
+            }
+            if (unwrap(err) instanceof SparqlThrottle.AdmissionTimeoutException) {
+                // timed out in our own throttle queue: the endpoint never saw the request
+                endpoints.notSent(target);
+            } else {
+                endpoints.failure(target);
+            }
+            if (!last) return;
+            if (err != null) hedge.result.completeExceptionally(unwrap(err));
+            else hedge.result.complete(resp);
+        });
+    }
+
+    /**
+     * Records the size of a 2xx body as it came off the wire and undoes its content coding.
+     * The async path receives bodies whole, so they are inflated in one go.
+     */
+    private byte[] received(String sparql, HttpResponse.ResponseInfo info, byte[] raw, boolean chosen) {
+        if (info.statusCode() / 100 == 2) recordWire(sparql, info.headers(), raw.length, chosen);
         try {
-            // population values can be big; parse safely
-            return Long.parseLong(v.replaceAll("[^0-9]", ""));
-        } catch (NumberFormatException e) {
-            return null;
+            return decoded(raw, info.headers());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
+    /** @param chosen the format chooser picked the format asked for, so it learns from the size */
+    private void recordWire(String sparql, HttpHeaders headers, long bytes, boolean chosen) {
+        Metrics.record("sparql.wire_bytes", bytes);
+        if (!chosen) return;
+        // the server may answer in another format than asked for
+        ResultFormat f = ResultFormat.ofMediaType(headers.firstValue("Content-Type").orElse(null));
+        if (f != null) formats.recordWire(sparql, f, bytes);
+    }
 
-    private static List<CountryFact> parseCountryFacts(JSONObject json) throws JSONException {
-        JSONArray rows = json.getJSONObject("results").getJSONArray("bindings");
-        List<CountryFact> out = new ArrayList<>();
+    private static Throwable unwrap(Throwable err) {
+        if (err instanceof CompletionException && err.getCause() != null) err = err.getCause();
+        // a body that could not be decompressed
+        return err instanceof UncheckedIOException u ? u.getCause() : err;
+    }
+
+    /**
+     * Statuses worth trying again, possibly on another endpoint: throttling and the 5xx that
+     * mean "not now" (500, 502, 503, 504). Other 4xx and 5xx would fail the same way again.
+     */
+    static boolean retryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
 
-        for(int i=0; i< rows.length(); i++) {
-            JSONObject row = rows.getJSONObject(i);
-            String countryUri = getBindingValue(row, "country");
-            String countryLabel = getBindingValue(row, "countryLabel");
-            String capitalUri = getBindingValue(row, "capital");
-            String capitalLabel = getBindingValue(row, "capitalLabel");
-            Long population = getBindingLong(row, "population");
-            String thumbnail = getBindingValue(row, "thumbnail");
+    /** What an answer says about the host's load, for its throttle. */
+    private static SparqlThrottle.Outcome outcomeOf(int status) {
+        return status == 429 || status == 503 || status == 504
+                ? SparqlThrottle.Outcome.OVERLOADED : SparqlThrottle.Outcome.OK;
+    }
+
+    private static SparqlThrottle.Outcome outcomeOf(Throwable failure) {
+        if (failure instanceof HttpTimeoutException) return SparqlThrottle.Outcome.OVERLOADED;
+        if (failure instanceof CancellationException) return SparqlThrottle.Outcome.CANCELLED;
+        return SparqlThrottle.Outcome.FAILED;
+    }
 
-            System.out.println("/ncountry: "+countryLabel+"; city: "+capitalLabel);
+    private static boolean retryAllowed(RetryBudget budget) {
+        if (budget.tryRetry()) return true;
+        Metrics.increment("sparql.retry.budget_spent");
+        log.debug("SPARQL retry budget spent, not retrying");
+        return false;
+    }
 
-            if (countryUri == null || countryLabel == null) continue;
-            out.add(new CountryFact(countryUri, countryLabel, capitalUri, capitalLabel, population, thumbnail));
+    /** Retry-After as nanoseconds from now (delta-seconds or HTTP date); 0 when absent or unreadable. */
+    static long retryAfterNanos(HttpHeaders headers) {
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null || value.isBlank()) return 0;
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Instant at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, Duration.between(Instant.now(), at).toNanos());
+            } catch (DateTimeParseException notDate) {
+                return 0;
+            }
         }
+    }
+
+    /**
+     * Wait before retry {@code attempt}: the exponential backoff or the server's Retry-After,
+     * whichever is longer; -1 when the server wants us gone for longer than MAX_RETRY_AFTER.
+     */
+    private long retryDelayMillis(int attempt, long retryAfterNanos) {
+        if (retryAfterNanos > MAX_RETRY_AFTER.toNanos()) return -1;
+        return Math.max(backoffMillis(attempt), TimeUnit.NANOSECONDS.toMillis(retryAfterNanos));
+    }
+
+    private static String errorSnippet(byte[] body) {
+        return new String(body, 0, Math.min(512, body.length), StandardCharsets.UTF_8);
+    }
+
+    private static String errorSnippet(InputStream in) throws IOException {
+        return new String(in.readNBytes(512), StandardCharsets.UTF_8);
+    }
+
+    private long backoffMillis(int attempt) {
+        return (long)Math.min(4000, 300*Math.pow(2, attempt - 1)) + rnd.nextInt(200);
+    }
+
+    static List<CountryFact> parseCountryFacts(InputStream in) throws IOException {
+        List<CountryFact> out = new ArrayList<>();
+        ResultFormat.read(in, FACT_VARS, row -> {
+            String countryUri = row[0];
+            String countryLabel = row[1];
+            if (countryUri == null || countryLabel == null) return;
+            out.add(new CountryFact(countryUri, countryLabel, row[2], row[3],
+                    SparqlJsonReader.parseDigits(row[4]), row[5]));
+        });
         return  out;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package org.example.model;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Equivalent SPARQL endpoints (mirrors, our own Virtuoso, a caching proxy) with health tracking,
+ * used by DbpediaClient for failover and hedged requests.
+ *
+ * Every endpoint has a smoothed latency and a circuit breaker. After FAILURES_TO_OPEN failures
+ * in a row the breaker opens and the endpoint is skipped for a cool-down that doubles (up to
+ * MAX_COOLDOWN) each time it opens again; when the cool-down is over one probe request is let
+ * through, and its outcome closes or re-opens the breaker.
+ *
+ * {@link #hedgeDelayNanos()} is the p95 of recent successful requests over all endpoints: a
+ * request that has not answered by then is worth sending somewhere else as well.
+ */
+final class EndpointPool {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointPool.class);
+
+    static final int FAILURES_TO_OPEN = 5;
+    private static final long BASE_COOLDOWN_NANOS = Duration.ofSeconds(5).toNanos();
+    private static final long MAX_COOLDOWN_NANOS = Duration.ofSeconds(60).toNanos();
+    private static final double EWMA_WEIGHT = 0.2;
+    // an endpoint passed over for this long gets the next request, so its latency stays current
+    private static final long REFRESH_NANOS = Duration.ofSeconds(5).toNanos();
+
+    // successful request latencies kept for the hedge delay, and how many are needed to trust it
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final long MIN_HEDGE_NANOS = Duration.ofMillis(20).toNanos();
+
+    static final class Endpoint {
+        final String url;
+        // guarded by the pool
+        private double ewmaNanos;
+        private int failures;
+        private int opens;
+        private long openUntil;
+        private boolean probing;
+        private long lastSent;
+
+        Endpoint(String url) {
+            this.url = url;
+            this.lastSent = System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+    private final long fallbackHedgeNanos;
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+    private volatile long hedgeNanos;
+
+    /**
+     * @param urls           endpoints in order of preference; ties in health go to the earlier one
+     * @param fallbackHedge  hedge delay used until enough requests have been timed
+     */
+    EndpointPool(List<String> urls, Duration fallbackHedge) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("at least one endpoint is needed");
+        List<Endpoint> list = new ArrayList<>(urls.size());
+        for (String u : urls) list.add(new Endpoint(u));
+        this.endpoints = List.copyOf(list);
+        this.fallbackHedgeNanos = fallbackHedge.toNanos();
+        this.hedgeNanos = fallbackHedgeNanos;
+    }
+
+    int size() {
+        return endpoints.size();
+    }
+
+    String primary() {
+        return endpoints.get(0).url;
+    }
+
+    /**
+     * The healthiest endpoint that may take a request now, other than {@code exclude}; null when
+     * every breaker is open. Picking an endpoint whose cool-down is over makes it the probe.
+     */
+    synchronized Endpoint acquire(Endpoint exclude) {
+        long now = System.nanoTime();
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Endpoint e : endpoints) {
+            if (e == exclude || !available(e, now)) continue;
+            double score;
+            if (now - e.lastSent > REFRESH_NANOS) {
+                // stale latency scores 0, so the endpoint gets tried
+                score = 0;
+            } else if (e.ewmaNanos == 0) {
+                // never answered: worth a try, unless all it did so far was fail
+                score = e.failures == 0 ? 0 : Double.MAX_VALUE / 2;
+            } else {
+                score = e.ewmaNanos * (1 + e.failures);
+            }
+            if (score < bestScore) {
+                best = e;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            best.lastSent = now;
+            if (best.openUntil != 0) best.probing = true;
+        }
+        return best;
+    }
+
+    private static boolean available(Endpoint e, long now) {
+        if (e.openUntil == 0) return true;
+        return now - e.openUntil >= 0 && !e.probing;
+    }
+
+    /** The endpoint answered (any status that is not its own fault) after {@code nanos}. */
+    synchronized void success(Endpoint e, long nanos) {
+        if (e.openUntil != 0) log.info("SPARQL endpoint {} is back, circuit closed", e.url);
+        e.failures = 0;
+        e.opens = 0;
+        e.openUntil = 0;
+        e.probing = false;
+        observe(e, nanos);
+        samples[nextSample] = nanos;
+        nextSample = (nextSample + 1) % SAMPLES;
+        if (sampleCount < SAMPLES) sampleCount++;
+        if (sampleCount >= MIN_SAMPLES && nextSample % 16 == 0) hedgeNanos = p95();
+    }
+
+    /** Transport error, timeout, throttling or 5xx. */
+    synchronized void failure(Endpoint e) {
+        e.failures++;
+        if (e.probing || (e.openUntil == 0 && e.failures >= FAILURES_TO_OPEN)) {
+            e.opens++;
+            long cooldown = Math.min(MAX_COOLDOWN_NANOS, BASE_COOLDOWN_NANOS << Math.min(e.opens - 1, 16));
+            e.openUntil = System.nanoTime() + cooldown;
+            e.probing = false;
+            Metrics.increment("sparql.breaker.open");
+            log.warn("SPARQL endpoint {} failed {} times in a row, circuit open for {} s",
+                    e.url, e.failures, cooldown / 1_000_000_000L);
+        }
+    }
+
+    /**
+     * The request never left this process (it timed out in the host's throttle queue): says
+     * nothing about the endpoint, so only a probe slot it held is given back.
+     */
+    synchronized void notSent(Endpoint e) {
+        e.probing = false;
+    }
+
+    /** A request that lost a hedge race and was cancelled after {@code nanos}: a latency lower bound. */
+    synchronized void abandoned(Endpoint e, long nanos) {
+        if (nanos > e.ewmaNanos) observe(e, nanos);
+        e.probing = false;
+    }
+
+    long hedgeDelayNanos() {
+        return hedgeNanos;
+    }
+
+    private static void observe(Endpoint e, long nanos) {
+        e.ewmaNanos = e.ewmaNanos == 0 ? nanos : e.ewmaNanos + EWMA_WEIGHT * (nanos - e.ewmaNanos);
+    }
+
+    private long p95() {
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        long p = sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+        return Math.max(MIN_HEDGE_NANOS, Math.min(p, fallbackHedgeNanos * 4));
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Endpoint e : endpoints) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(e.url).append(String.format(" (%.0f ms", e.ewmaNanos / 1e6));
+            if (e.openUntil != 0) sb.append(", open");
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
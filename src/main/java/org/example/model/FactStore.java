@@ -0,0 +1,265 @@
+package org.example.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * Compact, indexed store of country facts.
+ *
+ * Countries and capitals get dense int ids. Attributes live in parallel arrays indexed by id,
+ * URIs are split into a shared prefix (stored once) and a local name, and lookups go through
+ * hash indexes, so an upsert is O(1) instead of a scan over the pool. Countries are found by
+ * URI through an open-addressing table of int ids keyed by the URI's hash: no boxed keys,
+ * entries or URI strings are kept for it.
+ *
+ * Not thread-safe; callers guard it with their own lock.
+ */
+public class FactStore {
+
+    public static final int NONE = -1;
+    private static final long NO_POPULATION = -1L;
+
+    // countries, indexed by country id
+    private final UriColumn countryUris = new UriColumn();
+    // open addressing by URI hash, linear probing; a slot holds id + 1, 0 when empty
+    private int[] uriSlots = new int[32];
+    private int[] uriHashes = new int[32];
+    private String[] countryLabels = new String[16];
+    private int[] capitalOf = new int[16];
+    private long[] populations = new long[16];
+    private final UriColumn thumbnails = new UriColumn();
+    private int countries;
+
+    // capitals, indexed by capital id; deduplicated by normalized label
+    private final Map<String, Integer> capitalIndex = new HashMap<>();
+    private String[] capitalLabels = new String[16];
+    private final UriColumn capitalUris = new UriColumn();
+    private int capitals;
+
+    public int size() { return countries; }
+    public int capitalCount() { return capitals; }
+
+    /** Country id for a URI, or NONE. */
+    public int idOf(String countryUri) {
+        if (countryUri == null) return NONE;
+        int h = countryUri.hashCode();
+        int mask = uriSlots.length - 1;
+        int p = -2;
+        for (int i = spread(h) & mask; uriSlots[i] != 0; i = (i + 1) & mask) {
+            if (uriHashes[i] != h) continue;
+            int id = uriSlots[i] - 1;
+            // the prefix is looked up only once a hash matches
+            if (p == -2) p = UriColumn.PREFIXES.find(countryUri);
+            if (countryUris.matches(id, p, countryUri)) return id;
+        }
+        return NONE;
+    }
+
+    public boolean contains(String countryUri) {
+        return idOf(countryUri) != NONE;
+    }
+
+    /**
+     * Inserts a fact or merges it into the existing entry for the same country URI
+     * (non-null attributes win, except the capital: the first one stays). Returns whether
+     * anything changed: a new country, a first capital, or a label, population or thumbnail
+     * that differs from what was stored. Facts without a URI are ignored.
+     */
+    public boolean upsert(CountryFact f) {
+        String uri = f.getCountryUri();
+        if (uri == null) return false;
+
+        boolean changed = false;
+        int id = idOf(uri);
+        if (id == NONE) {
+            id = countries++;
+            ensureCountryCapacity(countries);
+            countryUris.set(id, uri);
+            indexUri(id, uri.hashCode());
+            capitalOf[id] = NONE;
+            populations[id] = NO_POPULATION;
+            changed = true;
+        }
+        if (f.getCountry() != null && !f.getCountry().equals(countryLabels[id])) {
+            countryLabels[id] = f.getCountry();
+            changed = true;
+        }
+        // a country with both dbo:capital and dbp:capital comes as one row per capital, in no
+        // fixed order across refills; the first one kept stays, so the pair does not flip
+        if (f.getCapital() != null && capitalOf[id] == NONE) {
+            int cap = addCapital(f.getCapital(), f.getCapitalUri());
+            changed |= cap != NONE;
+            capitalOf[id] = cap;
+        }
+        if (f.getPopulation() != null && f.getPopulation() != populations[id]) {
+            populations[id] = f.getPopulation();
+            changed = true;
+        }
+        if (f.getThumbnail() != null && !f.getThumbnail().equals(thumbnails.get(id))) {
+            thumbnails.set(id, f.getThumbnail());
+            changed = true;
+        }
+        return changed;
+    }
+
+    /** Adds a capital name to the distractor pool; returns its id (existing one for duplicates). */
+    public int addCapital(String label, String uri) {
+        if (label == null || label.isBlank()) return NONE;
+        String key = label.trim().toLowerCase(Locale.ROOT);
+        Integer known = capitalIndex.get(key);
+        if (known != null) {
+            if (uri != null && capitalUris.get(known) == null) capitalUris.set(known, uri);
+            return known;
+        }
+        int id = capitals++;
+        if (id >= capitalLabels.length) capitalLabels = Arrays.copyOf(capitalLabels, id * 2);
+        capitalLabels[id] = label;
+        if (uri != null) capitalUris.set(id, uri);
+        capitalIndex.put(key, id);
+        return id;
+    }
+
+    public String countryLabel(int id) { return countryLabels[id]; }
+    public String countryUri(int id) { return countryUris.get(id); }
+    public int capitalId(int id) { return capitalOf[id]; }
+    public String capitalLabel(int capitalId) { return capitalId == NONE ? null : capitalLabels[capitalId]; }
+    public String thumbnail(int id) { return thumbnails.get(id); }
+
+    /** Population of a country, or -1 when unknown. */
+    public long population(int id) { return populations[id]; }
+
+    /** Materializes a country as a CountryFact (a fresh object on every call). */
+    public CountryFact fact(int id) {
+        int cap = capitalOf[id];
+        long pop = populations[id];
+        return new CountryFact(countryUris.get(id), countryLabels[id],
+                cap == NONE ? null : capitalUris.get(cap), capitalLabel(cap),
+                pop == NO_POPULATION ? null : pop, thumbnails.get(id));
+    }
+
+    /** Live read-only view of all countries as facts, for APIs that take a List. */
+    public List<CountryFact> factView() {
+        return new AbstractList<>() {
+            @Override public CountryFact get(int i) { return fact(i); }
+            @Override public int size() { return countries; }
+        };
+    }
+
+    /** Live read-only view of the capital names. */
+    public List<String> capitalView() {
+        return new AbstractList<>() {
+            @Override public String get(int i) { return capitalLabels[i]; }
+            @Override public int size() { return capitals; }
+        };
+    }
+
+    private void indexUri(int id, int h) {
+        // keep the table at most half full
+        if (countries * 2 > uriSlots.length) {
+            int[] oldSlots = uriSlots;
+            int[] oldHashes = uriHashes;
+            uriSlots = new int[oldSlots.length * 2];
+            uriHashes = new int[oldSlots.length * 2];
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) put(oldSlots[i], oldHashes[i]);
+            }
+        }
+        put(id + 1, h);
+    }
+
+    private void put(int slotValue, int h) {
+        int mask = uriSlots.length - 1;
+        int i = spread(h) & mask;
+        while (uriSlots[i] != 0) i = (i + 1) & mask;
+        uriSlots[i] = slotValue;
+        uriHashes[i] = h;
+    }
+
+    /** String hashes of similar URIs differ mostly in the low bits; mix in the high ones. */
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureCountryCapacity(int n) {
+        if (n <= countryLabels.length) return;
+        int cap = Math.max(n, countryLabels.length * 2);
+        countryLabels = Arrays.copyOf(countryLabels, cap);
+        capitalOf = Arrays.copyOf(capitalOf, cap);
+        populations = Arrays.copyOf(populations, cap);
+    }
+
+    /**
+     * Column of URIs stored as (prefix id, local name). The prefix is everything up to the last
+     * '/', kept once in a process-wide table, so "http://dbpedia.org/resource/" costs nothing
+     * per entry.
+     */
+    static final class UriColumn {
+        static final PrefixTable PREFIXES = new PrefixTable();
+
+        private int[] prefix = new int[16];
+        private String[] local = new String[16];
+
+        String get(int i) {
+            if (i >= local.length || local[i] == null) return null;
+            return PREFIXES.get(prefix[i]) + local[i];
+        }
+
+        String local(int i) { return local[i]; }
+
+        /** Whether entry i is {@code uri}, whose prefix id is {@code prefixId}; no String is built. */
+        boolean matches(int i, int prefixId, String uri) {
+            if (i >= local.length || local[i] == null || prefix[i] != prefixId) return false;
+            int start = uri.lastIndexOf('/') + 1;
+            String l = local[i];
+            return uri.length() - start == l.length() && uri.regionMatches(start, l, 0, l.length());
+        }
+
+        /** Stores the URI at index i and returns its prefix id. */
+        int set(int i, String uri) {
+            if (i >= local.length) {
+                int cap = Math.max(i + 1, local.length * 2);
+                prefix = Arrays.copyOf(prefix, cap);
+                local = Arrays.copyOf(local, cap);
+            }
+            int p = PREFIXES.intern(uri);
+            prefix[i] = p;
+            local[i] = localName(uri);
+            return p;
+        }
+
+        static String localName(String uri) {
+            return uri.substring(uri.lastIndexOf('/') + 1);
+        }
+    }
+
+    /** Shared dictionary of URI prefixes. */
+    static final class PrefixTable {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        synchronized int intern(String uri) {
+            String p = uri.substring(0, uri.lastIndexOf('/') + 1);
+            Integer id = ids.get(p);
+            if (id != null) return id;
+            values.add(p);
+            ids.put(p, values.size() - 1);
+            return values.size() - 1;
+        }
+
+        synchronized int find(String uri) {
+            Integer id = ids.get(uri.substring(0, uri.lastIndexOf('/') + 1));
+            return id == null ? NONE : id;
+        }
+
+        synchronized String get(int id) {
+            return values.get(id);
+        }
+    }
+}
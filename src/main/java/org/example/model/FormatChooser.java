@@ -0,0 +1,152 @@
+package org.example.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the result format to ask for, per kind of query (facts or capitals, count or page of a
+ * given size), from what each format has cost for it: bytes on the wire after compression and
+ * CPU spent decompressing and parsing.
+ *
+ * The first EXPLORE requests of a kind go round the formats; after that the cheapest is used,
+ * with every REVISIT_EVERY-th request sent in another format so the figures stay current. The
+ * cost of a byte on the wire is -Ddbpedia.format.byteNanos (default 100 ns, about 10 MB/s);
+ * -Ddbpedia.format=json|tsv|csv fixes the format instead.
+ */
+final class FormatChooser {
+
+    private static final Logger log = LoggerFactory.getLogger(FormatChooser.class);
+
+    private static final int EXPLORE = 3;
+    private static final int REVISIT_EVERY = 64;
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final ResultFormat[] FORMATS = ResultFormat.values();
+
+    /** Figures of one kind of query. */
+    private static final class Kind {
+        final int[] tried = new int[FORMATS.length];
+        final int[] wireSamples = new int[FORMATS.length];
+        final double[] wireBytes = new double[FORMATS.length];
+        final int[] cpuSamples = new int[FORMATS.length];
+        final double[] cpuNanos = new double[FORMATS.length];
+        long requests;
+        ResultFormat current;
+    }
+
+    private final ResultFormat fixed;
+    private final double byteNanos;
+    private final Map<String, Kind> kinds = new ConcurrentHashMap<>();
+
+    FormatChooser(ResultFormat fixed, double byteNanos) {
+        this.fixed = fixed;
+        this.byteNanos = byteNanos;
+    }
+
+    static FormatChooser fromSystemProperties() {
+        return new FormatChooser(ResultFormat.named(System.getProperty("dbpedia.format", "auto")),
+                Double.parseDouble(System.getProperty("dbpedia.format.byteNanos", "100")));
+    }
+
+    ResultFormat choose(String sparql) {
+        if (fixed != null) return fixed;
+        Kind k = kind(sparql);
+        synchronized (k) {
+            long n = k.requests++;
+            for (int i = 0; i < FORMATS.length; i++) {
+                if (k.tried[i] < EXPLORE) {
+                    k.tried[i]++;
+                    return FORMATS[i];
+                }
+            }
+            if (n % REVISIT_EVERY == 0) return FORMATS[(int) (n / REVISIT_EVERY % FORMATS.length)];
+            ResultFormat best = cheapest(k);
+            if (best != k.current) {
+                log.debug("SPARQL {}: asking for {} results now ({})", key(sparql), best.label, costs(k));
+                k.current = best;
+            }
+            return best;
+        }
+    }
+
+    /** Body size of a 2xx answer as received, before decompression. */
+    void recordWire(String sparql, ResultFormat format, long bytes) {
+        Metrics.record("sparql.wire_bytes." + format.label, bytes);
+        if (fixed != null) return;
+        Kind k = kind(sparql);
+        synchronized (k) {
+            int i = format.ordinal();
+            k.wireBytes[i] = ewma(k.wireBytes[i], k.wireSamples[i]++, bytes);
+        }
+    }
+
+    /** CPU time spent reading and parsing one result, decompression included. */
+    void recordParse(String sparql, ResultFormat format, long cpuNanos) {
+        Metrics.record("sparql.parse_cpu." + format.label, cpuNanos);
+        if (fixed != null) return;
+        Kind k = kind(sparql);
+        synchronized (k) {
+            int i = format.ordinal();
+            k.cpuNanos[i] = ewma(k.cpuNanos[i], k.cpuSamples[i]++, cpuNanos);
+        }
+    }
+
+    private ResultFormat cheapest(Kind k) {
+        ResultFormat best = ResultFormat.JSON;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < FORMATS.length; i++) {
+            // a format the server never answered in (it may ignore Accept) is out
+            if (k.wireSamples[i] == 0) continue;
+            double cost = cost(k, i);
+            if (cost < bestCost) {
+                best = FORMATS[i];
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private double cost(Kind k, int i) {
+        return k.wireBytes[i] * byteNanos + k.cpuNanos[i];
+    }
+
+    private String costs(Kind k) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FORMATS.length; i++) {
+            if (k.wireSamples[i] == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(String.format("%s %.0f B + %.0f us", FORMATS[i].label, k.wireBytes[i], k.cpuNanos[i] / 1e3));
+        }
+        return sb.toString();
+    }
+
+    private Kind kind(String sparql) {
+        return kinds.computeIfAbsent(key(sparql), key -> new Kind());
+    }
+
+    /** Pages of one size cost about the same wherever they start. */
+    static String key(String sparql) {
+        String d = DbpediaClient.describe(sparql);
+        int offset = d.indexOf(" OFFSET ");
+        return offset < 0 ? d : d.substring(0, offset);
+    }
+
+    private static double ewma(double avg, int samples, long value) {
+        return samples == 0 ? value : avg + EWMA_WEIGHT * (value - avg);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        kinds.forEach((key, k) -> {
+            synchronized (k) {
+                if (sb.length() > 0) sb.append("; ");
+                sb.append(key).append(": ").append(costs(k));
+            }
+        });
+        return sb.toString();
+    }
+}
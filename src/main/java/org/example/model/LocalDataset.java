@@ -0,0 +1,386 @@
+package org.example.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTP;
+import org.apache.jena.sparql.modify.TemplateLib;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.vocabulary.RDFS;
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process copy of the Asian-country subgraph of DBpedia.
+ *
+ * The subgraph (country, labels, capitals, population, thumbnail) is pulled once with a
+ * CONSTRUCT query and kept in a Jena dataset, either in memory or in a TDB2 directory on disk.
+ * After that the same SELECT queries DbpediaClient sends to dbpedia.org run locally through ARQ.
+ * {@link #refreshFrom} later pulls only the countries that changed upstream.
+ */
+public class LocalDataset {
+
+    private static final String MATERIALIZE_PREFIXES = """
+            PREFIX dbo:  <http://dbpedia.org/ontology/>
+            PREFIX dbp:  <http://dbpedia.org/property/>
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+            PREFIX dct:  <http://purl.org/dc/terms/>
+            PREFIX dbc:  <http://dbpedia.org/resource/Category:>
+
+            """;
+
+    /**
+     * Everything the quiz queries touch, with the same predicates DBpedia uses, plus each
+     * country's page revision as its change marker.
+     */
+    private static final String MATERIALIZE_CONSTRUCT = """
+            CONSTRUCT {
+              ?country a dbo:Country ;
+                       dct:subject dbc:Countries_in_Asia ;
+                       rdfs:label ?countryLabel ;
+                       dbo:dissolutionYear ?diss ;
+                       dbo:capital ?dboCapital ;
+                       dbp:capital ?dbpCapital ;
+                       dbo:populationTotal ?population ;
+                       dbo:thumbnail ?thumbnail ;
+                       dbo:wikiPageRevisionID ?rev .
+              ?dboCapital rdfs:label ?dboCapitalLabel .
+              ?dbpCapital rdfs:label ?dbpCapitalLabel .
+            }
+            """;
+
+    /** Pattern of MATERIALIZE_CONSTRUCT; the %s is a VALUES clause that restricts the countries, or nothing. */
+    private static final String MATERIALIZE_WHERE = """
+            WHERE {
+              %s
+              ?country a dbo:Country ;
+                       dct:subject dbc:Countries_in_Asia ;
+                       rdfs:label ?countryLabel .
+              FILTER ( langMatches(lang(?countryLabel), "EN") )
+              OPTIONAL { ?country dbo:dissolutionYear ?diss }
+              OPTIONAL {
+                ?country dbo:capital ?dboCapital .
+                ?dboCapital rdfs:label ?dboCapitalLabel .
+                FILTER ( langMatches(lang(?dboCapitalLabel), "EN") )
+              }
+              OPTIONAL {
+                ?country dbp:capital ?dbpCapital . FILTER( isIRI(?dbpCapital) )
+                ?dbpCapital rdfs:label ?dbpCapitalLabel .
+                FILTER ( langMatches(lang(?dbpCapitalLabel), "EN") )
+              }
+              OPTIONAL { ?country dbo:populationTotal ?population }
+              OPTIONAL { ?country dbo:thumbnail ?thumbnail }
+              OPTIONAL { ?country dbo:wikiPageRevisionID ?rev }
+            }
+            """;
+
+    static final String MATERIALIZE_QUERY = MATERIALIZE_PREFIXES + MATERIALIZE_CONSTRUCT + MATERIALIZE_WHERE.formatted("");
+
+    /**
+     * The same pattern as a SELECT, for refreshes: they go through DbpediaClient's request path,
+     * which reads SPARQL results, and each row fills in the CONSTRUCT template locally. The
+     * triples are the ones the CONSTRUCT would have returned.
+     */
+    private static final String REFRESH_TEMPLATE = MATERIALIZE_PREFIXES + "SELECT *\n" + MATERIALIZE_WHERE;
+
+    /** One row per country of the snapshot with its revision: a few dozen bytes each. */
+    static final String MARKER_QUERY = """
+            PREFIX dbo:  <http://dbpedia.org/ontology/>
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+            PREFIX dct:  <http://purl.org/dc/terms/>
+            PREFIX dbc:  <http://dbpedia.org/resource/Category:>
+
+            SELECT DISTINCT ?country ?rev WHERE {
+              ?country a dbo:Country ;
+                       dct:subject dbc:Countries_in_Asia .
+              FILTER EXISTS { ?country rdfs:label ?l . FILTER ( langMatches(lang(?l), "EN") ) }
+              OPTIONAL { ?country dbo:wikiPageRevisionID ?rev }
+            }
+            """;
+
+    static final String[] MARKER_VARS = {"country", "rev"};
+
+    // countries per delta query, so the request stays a modest POST
+    private static final int REFRESH_CHUNK = 100;
+
+    private static final String DBO = "http://dbpedia.org/ontology/";
+    private static final String DBP = "http://dbpedia.org/property/";
+
+    private static final Logger log = LoggerFactory.getLogger(LocalDataset.class);
+
+    // SELECTs compiled by ARQ are kept by text; the client sends a handful of distinct queries
+    private static final int MAX_COMPILED = 256;
+
+    private final Dataset dataset;
+    private final Map<String, Query> compiled = new ConcurrentHashMap<>();
+
+    private LocalDataset(Dataset dataset) {
+        this.dataset = Objects.requireNonNull(dataset);
+    }
+
+    /** Transactional in-memory dataset, lost when the process exits. */
+    public static LocalDataset inMemory() {
+        return new LocalDataset(DatasetFactory.createTxnMem());
+    }
+
+    /** TDB2 dataset in the given directory, reused across restarts. */
+    public static LocalDataset onDisk(Path dir) {
+        return new LocalDataset(TDB2Factory.connectDataset(dir.toString()));
+    }
+
+    /**
+     * Picks the dataset from the "dbpedia.local" system property:
+     * "mem" for in-memory, any other value is a TDB2 directory. Returns null when unset.
+     */
+    public static LocalDataset fromSystemProperty() {
+        String v = System.getProperty("dbpedia.local");
+        if (v == null || v.isBlank()) return null;
+        return "mem".equalsIgnoreCase(v.trim()) ? inMemory() : onDisk(Path.of(v.trim()));
+    }
+
+    public boolean isEmpty() {
+        return Txn.calculateRead(dataset, () -> dataset.getDefaultModel().isEmpty());
+    }
+
+    public long size() {
+        return Txn.calculateRead(dataset, () -> dataset.getDefaultModel().size());
+    }
+
+    /** Replaces the local copy with a fresh CONSTRUCT from the given endpoint. */
+    public synchronized void materializeFrom(String endpoint) {
+        Model fetched;
+        try (QueryExecution qe = QueryExecutionHTTP.service(endpoint)
+                .query(MATERIALIZE_QUERY)
+                .build()) {
+            fetched = qe.execConstruct();
+        }
+        Txn.executeWrite(dataset, () -> {
+            Model m = dataset.getDefaultModel();
+            m.removeAll();
+            m.add(fetched);
+        });
+    }
+
+    /** Replaces the local copy with the triples of an RDF dump (any format RIOT recognises). */
+    public synchronized void loadFile(Path file) {
+        Txn.executeWrite(dataset, () -> {
+            Model m = dataset.getDefaultModel();
+            m.removeAll();
+            RDFDataMgr.read(m, file.toString());
+        });
+    }
+
+    /** Runs a SELECT upstream for {@link #refreshFrom} and returns the result body in {@code format}. */
+    @FunctionalInterface
+    public interface Upstream {
+        byte[] select(String sparql, ResultFormat format) throws IOException, InterruptedException;
+    }
+
+    /** What {@link #refreshFrom} changed, by country URI. */
+    public static final class Refresh {
+        /** New countries and countries whose revision changed; their triples were replaced. */
+        public final List<String> updated;
+        /** Countries no longer in the remote category; their triples were removed. */
+        public final List<String> removed;
+        public final int unchanged;
+
+        Refresh(List<String> updated, List<String> removed, int unchanged) {
+            this.updated = updated;
+            this.removed = removed;
+            this.unchanged = unchanged;
+        }
+
+        public boolean isEmpty() {
+            return updated.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return updated.size() + " updated, " + removed.size() + " removed, " + unchanged + " unchanged";
+        }
+    }
+
+    /**
+     * Brings the local copy up to date with the endpoint, transferring only what changed.
+     * Queries go out through {@code upstream}, so they get the client's throttling, retries
+     * and failover; one that still fails aborts the refresh and leaves the copy as it was.
+     *
+     * One SELECT fetches every remote country with its page revision; the same query runs
+     * locally, and only countries that are new or have another revision are pulled, with the
+     * materializing pattern restricted to them. Their old triples are replaced and those of
+     * countries gone from the category are dropped in a single write transaction, so readers
+     * see either the old snapshot or the new one, never a mix, and are not blocked meanwhile.
+     * Countries without a revision on either side count as unchanged once present.
+     */
+    public synchronized Refresh refreshFrom(Upstream upstream) throws IOException, InterruptedException {
+        long t0 = System.nanoTime();
+        // TSV: URI and number per line, about a third of the JSON
+        Map<String, String> remote = markers(upstream.select(MARKER_QUERY, ResultFormat.TSV));
+        Map<String, String> local = markers(select(MARKER_QUERY, ResultFormat.TSV));
+
+        List<String> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        remote.forEach((country, rev) -> {
+            if (!rev.equals(local.get(country))) updated.add(country);
+        });
+        for (String country : local.keySet()) {
+            if (!remote.containsKey(country)) removed.add(country);
+        }
+        Refresh result = new Refresh(updated, removed, remote.size() - updated.size());
+        if (result.isEmpty()) {
+            Metrics.timeSince("local.refresh", t0);
+            return result;
+        }
+
+        // JSON: unlike TSV and CSV as some servers write them, it keeps IRIs, language tags and
+        // datatypes apart, and the template needs them
+        List<Triple> template = QueryFactory.create(MATERIALIZE_QUERY).getConstructTemplate().getTriples();
+        Model fetched = ModelFactory.createDefaultModel();
+        for (int from = 0; from < updated.size(); from += REFRESH_CHUNK) {
+            List<String> chunk = updated.subList(from, Math.min(updated.size(), from + REFRESH_CHUNK));
+            String sparql = REFRESH_TEMPLATE.formatted(SparqlTemplate.values("country", chunk));
+            byte[] body = upstream.select(sparql, ResultFormat.JSON);
+            ResultSet rows = ResultSetMgr.read(new ByteArrayInputStream(body), ResultSetLang.RS_JSON);
+            List<Binding> bindings = new ArrayList<>();
+            while (rows.hasNext()) bindings.add(rows.nextBinding());
+            // rows leaving a template variable unbound drop that triple, as in a CONSTRUCT
+            TemplateLib.calcTriples(template, bindings.iterator()).forEachRemaining(fetched.getGraph()::add);
+        }
+        Txn.executeWrite(dataset, () -> replace(dataset.getDefaultModel(), updated, removed, fetched));
+
+        Metrics.timeSince("local.refresh", t0);
+        Metrics.record("local.refresh.updated", updated.size());
+        log.info("Local dataset refreshed: {} ({} triples fetched)", result, fetched.size());
+        return result;
+    }
+
+    /** Swaps the triples of the given countries for the fetched ones, inside a write transaction. */
+    private static void replace(Model m, List<String> updated, List<String> removed, Model fetched) {
+        Property dboCapital = m.createProperty(DBO, "capital");
+        Property dbpCapital = m.createProperty(DBP, "capital");
+        Set<Resource> oldCapitals = new HashSet<>();
+        for (List<String> countries : List.of(updated, removed)) {
+            for (String uri : countries) {
+                Resource country = m.createResource(uri);
+                for (Property p : List.of(dboCapital, dbpCapital)) {
+                    m.listObjectsOfProperty(country, p).forEach(o -> {
+                        if (o.isURIResource()) oldCapitals.add(o.asResource());
+                    });
+                }
+                m.removeAll(country, null, null);
+            }
+        }
+        // a capital's label comes with the country that names it: take the fetched one
+        for (Resource s : fetched.listSubjectsWithProperty(RDFS.label).toList()) {
+            m.removeAll(s, RDFS.label, null);
+        }
+        m.add(fetched);
+        // capitals no country points at any more
+        for (Resource cap : oldCapitals) {
+            if (!m.contains(null, dboCapital, cap) && !m.contains(null, dbpCapital, cap)) {
+                m.removeAll(cap, RDFS.label, null);
+            }
+        }
+    }
+
+    /**
+     * country URI -> revision ("" when none); the highest one if a country has several.
+     * Countries whose URI could not be put into a query (see SparqlTemplate#values) are left
+     * out: they could never be fetched, and a crafted one must not reach the CONSTRUCT.
+     */
+    private static Map<String, String> markers(byte[] body) throws IOException {
+        Map<String, String> out = new HashMap<>();
+        int[] skipped = {0};
+        ResultFormat.read(new ByteArrayInputStream(body), MARKER_VARS, row -> {
+            String country = row[0];
+            if (country == null) return;
+            if (!SparqlTemplate.isQueryableIri(country)) {
+                skipped[0]++;
+                return;
+            }
+            String marker = row[1] == null ? "" : row[1];
+            out.merge(country, marker, (a, b) -> compareRevisions(a, b) >= 0 ? a : b);
+        });
+        if (skipped[0] > 0) log.warn("Skipped {} countries whose URI is not a valid IRI", skipped[0]);
+        return out;
+    }
+
+    /** Revision ids are numbers ("1000" is after "999"); anything else compares as text. */
+    private static int compareRevisions(String a, String b) {
+        try {
+            return Long.compare(Long.parseLong(a), Long.parseLong(b));
+        } catch (NumberFormatException e) {
+            return a.compareTo(b);
+        }
+    }
+
+    /** Loads the dataset from the endpoint only if nothing has been materialized yet. */
+    public synchronized void ensureLoaded(String endpoint) {
+        if (isEmpty()) materializeFrom(endpoint);
+    }
+
+    /** Runs a SELECT through ARQ and returns it in the SPARQL JSON results format. */
+    public byte[] select(String sparql) {
+        return select(sparql, ResultFormat.JSON);
+    }
+
+    /** Runs a SELECT through ARQ and returns it in the given results format. */
+    public byte[] select(String sparql, ResultFormat format) {
+        return Txn.calculateRead(dataset, () -> {
+            try (QueryExecution qe = QueryExecution.dataset(dataset).query(compile(sparql)).build()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                switch (format) {
+                    case JSON -> ResultSetFormatter.outputAsJSON(out, qe.execSelect());
+                    case TSV -> ResultSetFormatter.outputAsTSV(out, qe.execSelect());
+                    case CSV -> ResultSetFormatter.outputAsCSV(out, qe.execSelect());
+                }
+                return out.toByteArray();
+            }
+        });
+    }
+
+    /** Parses a query once; later calls with the same text reuse it. */
+    private Query compile(String sparql) {
+        Query q = compiled.get(sparql);
+        if (q == null) {
+            q = QueryFactory.create(sparql);
+            // settle the lazily computed projection before other threads share the query
+            q.getResultVars();
+            if (compiled.size() >= MAX_COMPILED) compiled.clear();
+            compiled.put(sparql, q);
+        }
+        return q;
+    }
+
+    public void close() {
+        dataset.close();
+    }
+}
@@ -2,11 +2,15 @@ package org.example.model;
 
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 public class Question {
     public enum QuestionType {
         CAPITAL,
-        COUNTRY
+        COUNTRY,
+        // appended: quiz packs store the ordinal
+        LARGEST_POPULATION,
+        MORE_POPULOUS
     }
 
     private final String id;
@@ -74,11 +78,20 @@ public class Question {
         public Builder meta(String key, String value) { if (value != null) this.meta.put(key, value); return this; }
 
 
-        public Question buildShuffled(Random rnd) {
+        /** Options in the given order, e.g. Yes/No. */
+        public Question build() {
+            if (options == null || options.size() < 2) throw new IllegalStateException("Need at least 2 options");
+            return new Question(id, type, prompt, options, correctIndex, explanation, meta);
+        }
+
+        /** Same permutation as Collections.shuffle for a java.util.Random; also takes SplittableRandom. */
+        public Question buildShuffled(RandomGenerator rnd) {
             if (options == null || options.size() < 2) throw new IllegalStateException("Need at least 2 options");
             String correct = options.get(correctIndex);
             List<String> shuffled = new ArrayList<>(options);
-            Collections.shuffle(shuffled, rnd);
+            for (int i = shuffled.size(); i > 1; i--) {
+                Collections.swap(shuffled, i - 1, rnd.nextInt(i));
+            }
             int newIdx = shuffled.indexOf(correct);
             return new Question(id, type, prompt, shuffled, newIdx, explanation, meta);
         }
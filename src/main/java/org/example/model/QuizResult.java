@@ -50,6 +50,9 @@ public class QuizResult {
         }
 
         public String getPrompt() { return prompt; }
+        public List<String> getOptions() { return options; }
+        public int getCorrectIndex() { return correctIndex; }
+        public int getSelectedIndex() { return selectedIndex; }
         public String getExplain() { return explain; }
         public String getThumbnail() { return thumbnail; }
 
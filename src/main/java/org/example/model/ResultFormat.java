@@ -0,0 +1,92 @@
+package org.example.model;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * SPARQL SELECT result formats the client can ask for and read.
+ *
+ * Bodies are told apart by their first bytes, so cached and local results need no label:
+ * JSON starts with '{', TSV with a "?var" header or a header containing a tab, anything else
+ * is read as CSV.
+ */
+public enum ResultFormat {
+    JSON("application/sparql-results+json"),
+    TSV("text/tab-separated-values"),
+    CSV("text/csv");
+
+    // how far into the body the header line is looked for
+    private static final int SNIFF_BYTES = 4096;
+
+    final String mediaType;
+    final String encodedMediaType;
+    final String label;
+
+    ResultFormat(String mediaType) {
+        this.mediaType = mediaType;
+        this.encodedMediaType = URLEncoder.encode(mediaType, StandardCharsets.UTF_8);
+        this.label = name().toLowerCase(Locale.ROOT);
+    }
+
+    /** The format named by a Content-Type header, ignoring parameters; null for anything else. */
+    static ResultFormat ofMediaType(String contentType) {
+        if (contentType == null) return null;
+        int semi = contentType.indexOf(';');
+        String type = (semi < 0 ? contentType : contentType.substring(0, semi)).trim();
+        for (ResultFormat f : values()) {
+            if (f.mediaType.equalsIgnoreCase(type)) return f;
+        }
+        return null;
+    }
+
+    /** "json", "tsv" or "csv"; null for anything else, e.g. "auto". */
+    static ResultFormat named(String name) {
+        for (ResultFormat f : values()) {
+            if (f.label.equalsIgnoreCase(name.trim())) return f;
+        }
+        return null;
+    }
+
+    /** Reads a result in whichever of the formats it is in. */
+    public static void read(InputStream in, String[] vars, SparqlJsonReader.RowHandler handler) throws IOException {
+        if (!in.markSupported()) in = new BufferedInputStream(in);
+        ResultFormat f = detect(in);
+        if (f == JSON) {
+            SparqlJsonReader.read(in, vars, handler);
+        } else {
+            SparqlTextReader.read(in, vars, f == TSV, handler);
+        }
+    }
+
+    /** Looks at the start of a stream that supports mark/reset and puts it back. */
+    static ResultFormat detect(InputStream in) throws IOException {
+        in.mark(SNIFF_BYTES);
+        try {
+            int b = in.read();
+            int seen = 1;
+            // byte order mark, then blank space
+            if (b == 0xEF) {
+                in.skip(2);
+                b = in.read();
+                seen += 3;
+            }
+            while ((b == ' ' || b == '\r' || b == '\n') && seen < SNIFF_BYTES) {
+                b = in.read();
+                seen++;
+            }
+            if (b == '{' || b < 0) return JSON;
+            if (b == '?') return TSV;
+            for (; seen < SNIFF_BYTES && b >= 0 && b != '\n'; seen++) {
+                if (b == '\t') return TSV;
+                b = in.read();
+            }
+            return CSV;
+        } finally {
+            in.reset();
+        }
+    }
+}
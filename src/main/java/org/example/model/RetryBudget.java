@@ -0,0 +1,43 @@
+package org.example.model;
+
+/**
+ * Process-wide allowance for retries, so a struggling endpoint sees at most about RATIO extra
+ * requests on top of the normal traffic instead of every caller retrying at once.
+ *
+ * Each first attempt deposits RATIO of a retry, each retry withdraws one; the balance is capped
+ * at MAX_BALANCE. A small floor (FLOOR_PER_SECOND) keeps a quiet process able to retry.
+ */
+final class RetryBudget {
+
+    private static final double RATIO = 0.2;
+    private static final double MAX_BALANCE = 20;
+    private static final double FLOOR_PER_SECOND = 1;
+
+    private static final RetryBudget SHARED = new RetryBudget();
+
+    private double balance = 5;
+    private long updatedAt = System.nanoTime();
+
+    static RetryBudget shared() {
+        return SHARED;
+    }
+
+    synchronized void deposit() {
+        refill();
+        balance = Math.min(MAX_BALANCE, balance + RATIO);
+    }
+
+    /** Takes one retry from the budget; false when it is spent. */
+    synchronized boolean tryRetry() {
+        refill();
+        if (balance < 1) return false;
+        balance--;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        balance = Math.min(MAX_BALANCE, balance + (now - updatedAt) * FLOOR_PER_SECOND / 1e9);
+        updatedAt = now;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the work, everyone who
+ * arrives while it is in flight waits for and shares its result (or failure). The key is
+ * released as soon as the call finishes, so later callers start a fresh one.
+ *
+ * Shared results are handed to several callers; treat them as read-only.
+ */
+public class SingleFlight<K> {
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException, InterruptedException;
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <V> V run(K key, Call<V> call) throws IOException, InterruptedException {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> leader = (CompletableFuture<V>) inFlight.putIfAbsent(key, mine);
+        if (leader != null) return DbpediaClient.await(leader);
+
+        try {
+            V v = call.call();
+            mine.complete(v);
+            return v;
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> runAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> leader = (CompletableFuture<V>) inFlight.putIfAbsent(key, mine);
+        if (leader != null) return leader;
+
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((v, e) -> {
+            inFlight.remove(key, mine);
+            if (e != null) mine.completeExceptionally(e);
+            else mine.complete(v);
+        });
+        return mine;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.example.metrics.QuizEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Two-level cache of raw SPARQL result bodies: an in-memory LRU in front of a directory of files.
+ *
+ * Entries are keyed by a SHA-256 of the endpoint and the whitespace-normalized query text.
+ * A fresh entry (younger than ttl) is returned as is. An expired entry that is still inside the
+ * stale window is returned immediately and refreshed on a background thread. Anything older,
+ * or missing, is loaded synchronously.
+ */
+public class SparqlCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SparqlCache.class);
+
+    /** Fetches the body for a cache miss or a background refresh. */
+    @FunctionalInterface
+    public interface Loader {
+        byte[] load() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A body and whether this call ran the loader for it (a miss). A fresh or stale hit is
+     * {@code loaded == false}, even when it also starts a background refresh.
+     */
+    public static final class Result {
+        public final byte[] body;
+        public final boolean loaded;
+        Result(byte[] body, boolean loaded) { this.body = body; this.loaded = loaded; }
+    }
+
+    private static final class Entry {
+        final byte[] body;
+        final long fetchedAt;
+        Entry(byte[] body, long fetchedAt) { this.body = body; this.fetchedAt = fetchedAt; }
+    }
+
+    private final Path dir;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final long maxDiskBytes;
+    private final Map<String, Entry> memory;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sparql-cache-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param dir            directory for the on-disk level, or null for memory only
+     * @param maxEntries     capacity of the in-memory LRU
+     * @param maxDiskBytes   total size the directory is trimmed to after each write
+     * @param ttl            age after which an entry is refreshed
+     * @param staleWindow    extra age during which the expired entry is still served
+     */
+    public SparqlCache(Path dir, int maxEntries, long maxDiskBytes, Duration ttl, Duration staleWindow) {
+        this.dir = dir;
+        this.ttlMillis = ttl.toMillis();
+        this.staleMillis = staleWindow.toMillis();
+        this.maxDiskBytes = maxDiskBytes;
+        int cap = Math.max(1, maxEntries);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > cap;
+            }
+        };
+    }
+
+    /**
+     * Default cache under ~/.dbpedia-quiz/sparql-cache (or -Ddbpedia.cache.dir).
+     * The country list changes roughly monthly, so entries live a week and may be served
+     * stale for another month while they refresh.
+     */
+    public static SparqlCache createDefault() {
+        String d = System.getProperty("dbpedia.cache.dir");
+        Path dir = d != null && !d.isBlank()
+                ? Path.of(d)
+                : Path.of(System.getProperty("user.home"), ".dbpedia-quiz", "sparql-cache");
+        return new SparqlCache(dir, 64, 32L * 1024 * 1024, Duration.ofDays(7), Duration.ofDays(30));
+    }
+
+    public Result get(String endpoint, String query, Loader loader) throws IOException, InterruptedException {
+        String key = key(endpoint, query);
+        long now = System.currentTimeMillis();
+
+        byte[] hit = servable(key, now, loader);
+        if (hit != null) return new Result(hit, false);
+
+        QuizEvents.SparqlCacheLookup.record("miss");
+        byte[] body = loader.load();
+        put(key, body, now);
+        return new Result(body, true);
+    }
+
+    /** Non-blocking variant of {@link #get}: a miss completes when the loader's future does. */
+    public CompletableFuture<Result> getAsync(String endpoint, String query,
+                                              Supplier<CompletableFuture<byte[]>> loader) {
+        String key = key(endpoint, query);
+        long now = System.currentTimeMillis();
+
+        byte[] hit = servable(key, now, () -> loader.get().join());
+        if (hit != null) return CompletableFuture.completedFuture(new Result(hit, false));
+
+        QuizEvents.SparqlCacheLookup.record("miss");
+        return loader.get().thenApply(body -> {
+            put(key, body, now);
+            return new Result(body, true);
+        });
+    }
+
+    /** Fresh or still-servable stale body (scheduling a refresh for the latter), else null. */
+    private byte[] servable(String key, long now, Loader refresh) {
+        Entry e = lookup(key);
+        if (e == null) return null;
+        long age = now - e.fetchedAt;
+        if (age <= ttlMillis) {
+            QuizEvents.SparqlCacheLookup.record("hit");
+            return e.body;
+        }
+        if (age <= ttlMillis + staleMillis) {
+            QuizEvents.SparqlCacheLookup.record("stale");
+            refreshInBackground(key, refresh);
+            return e.body;
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        if (dir == null) return;
+        for (Path p : listFiles()) {
+            try { Files.deleteIfExists(p); } catch (IOException ignored) { }
+        }
+    }
+
+    static String key(String endpoint, String query) {
+        String normalized = query.strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+            md.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Entry lookup(String key) {
+        synchronized (this) {
+            Entry e = memory.get(key);
+            if (e != null) return e;
+        }
+        if (dir == null) return null;
+        Path file = dir.resolve(key + ".json");
+        try {
+            if (!Files.isRegularFile(file)) return null;
+            Entry e = new Entry(Files.readAllBytes(file), Files.getLastModifiedTime(file).toMillis());
+            synchronized (this) { memory.put(key, e); }
+            return e;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void put(String key, byte[] body, long fetchedAt) {
+        synchronized (this) { memory.put(key, new Entry(body, fetchedAt)); }
+        if (dir == null) return;
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(tmp, body);
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(fetchedAt));
+            Files.move(tmp, dir.resolve(key + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trimDisk();
+        } catch (IOException ex) {
+            // disk level is best effort; the memory level still has the entry
+            log.warn("SPARQL cache write failed: {}", ex.getMessage());
+        }
+    }
+
+    private void refreshInBackground(String key, Loader loader) {
+        if (!refreshing.add(key)) return;
+        refresher.execute(() -> {
+            try {
+                put(key, loader.load(), System.currentTimeMillis());
+            } catch (Exception ex) {
+                log.warn("SPARQL cache refresh failed: {}", ex.getMessage());
+            } finally {
+                refreshing.remove(key);
+            }
+        });
+    }
+
+    /** Deletes least recently written files until the directory fits in maxDiskBytes. */
+    private synchronized void trimDisk() throws IOException {
+        List<Path> files = listFiles();
+        long total = 0;
+        for (Path p : files) total += Files.size(p);
+        if (total <= maxDiskBytes) return;
+
+        files.sort(Comparator.comparingLong(SparqlCache::lastModified));
+        for (Path p : files) {
+            if (total <= maxDiskBytes) break;
+            total -= Files.size(p);
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private List<Path> listFiles() {
+        if (dir == null || !Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".json"))
+                    .collect(Collectors.toList());
+        } catch (IOException ex) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException ex) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Single-pass reader for the SPARQL 1.1 JSON results format.
+ *
+ * Walks the token stream with a Jackson {@link JsonParser} and hands each binding to a
+ * callback as an array of values in the order of the requested variables, without building
+ * a tree or a String copy of the body. Variables not asked for are skipped.
+ */
+public final class SparqlJsonReader {
+
+    /** Receives one row per binding. The array is reused between rows; copy what you keep. */
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(String[] values);
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private SparqlJsonReader() {}
+
+    public static void read(InputStream in, String[] vars, RowHandler handler) throws IOException {
+        try (JsonParser p = JSON.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a SPARQL JSON result");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken t = p.nextToken();
+                if ("results".equals(name) && t == JsonToken.START_OBJECT) {
+                    readResults(p, vars, handler);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readResults(JsonParser p, String[] vars, RowHandler handler) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken t = p.nextToken();
+            if (!"bindings".equals(name) || t != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            String[] row = new String[vars.length];
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                Arrays.fill(row, null);
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    int idx = indexOf(vars, p.currentName());
+                    p.nextToken();
+                    if (idx < 0) {
+                        p.skipChildren();
+                    } else {
+                        row[idx] = readValue(p);
+                    }
+                }
+                handler.row(row);
+            }
+        }
+    }
+
+    /** Reads the "value" member of an RDF term object, skipping type/datatype/xml:lang. */
+    private static String readValue(JsonParser p) throws IOException {
+        String value = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("value".equals(field)) {
+                value = p.getText();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private static int indexOf(String[] vars, String name) {
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps only the digits of a literal ("1,234,567" -> 1234567), like the old regex did.
+     * Returns null when there are no digits or the value does not fit in a long.
+     */
+    public static Long parseDigits(String v) {
+        if (v == null) return null;
+        long n = 0;
+        boolean any = false;
+        for (int i = 0; i < v.length(); i++) {
+            int d = v.charAt(i) - '0';
+            if (d < 0 || d > 9) continue;
+            if (n > (Long.MAX_VALUE - d) / 10) return null;
+            n = n * 10 + d;
+            any = true;
+        }
+        return any ? n : null;
+    }
+}
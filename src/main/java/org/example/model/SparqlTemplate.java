@@ -0,0 +1,124 @@
+package org.example.model;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.irix.IRIException;
+import org.apache.jena.irix.IRIx;
+import org.apache.jena.sparql.util.FmtUtils;
+
+/**
+ * A SELECT query prepared once: comments dropped, white space collapsed to single spaces, and
+ * form-encoded for the request body. Pages are that text plus " LIMIT n OFFSET m", so per call
+ * only the page clause is built and encoded instead of the whole query. The local dataset
+ * compiles each distinct text with ARQ once (see LocalDataset).
+ *
+ * Preparing does not parse with ARQ on purpose: the first parse initialises Jena, over a second
+ * on a slow machine, and remote queries would pay it before the first question.
+ */
+final class SparqlTemplate {
+
+    private final String name;
+    private final String text;
+    private final String encoded;
+
+    /**
+     * @param name   short label for logs and events, e.g. "facts"
+     * @param sparql a SELECT without LIMIT or OFFSET
+     */
+    SparqlTemplate(String name, String sparql) {
+        this.name = name;
+        this.text = compact(sparql);
+        this.encoded = URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+    /** The whole result, for COUNT queries. */
+    String text() {
+        return text;
+    }
+
+    String page(long limit, long offset) {
+        return text + " LIMIT " + limit + " OFFSET " + offset;
+    }
+
+    boolean matches(String sparql) {
+        return sparql.startsWith(text);
+    }
+
+    /** Form-encoded {@code sparql}, which must {@linkplain #matches match} this template. */
+    String encode(String sparql) {
+        if (sparql.length() == text.length()) return encoded;
+        return encoded + URLEncoder.encode(sparql.substring(text.length()), StandardCharsets.UTF_8);
+    }
+
+    /** The name plus the page clause, e.g. "facts LIMIT 32 OFFSET 64". */
+    String describe(String sparql) {
+        return sparql.length() == text.length() ? name : name + sparql.substring(text.length());
+    }
+
+    /**
+     * "VALUES ?var { <iri> ... }" for IRIs taken from upstream data. Each has to be an absolute
+     * IRI (see {@link #isQueryableIri}), so none can close the brackets or the block and add
+     * to the query it is pasted into.
+     *
+     * @throws IllegalArgumentException for anything else
+     */
+    static String values(String var, Collection<String> iris) {
+        StringBuilder sb = new StringBuilder("VALUES ?").append(var).append(" {");
+        for (String iri : iris) {
+            if (!isQueryableIri(iri)) throw new IllegalArgumentException("not an absolute IRI: " + iri);
+            sb.append(' ').append(FmtUtils.stringForNode(NodeFactory.createURI(iri)));
+        }
+        return sb.append(" }").toString();
+    }
+
+    /** Whether {@code iri} parses as an absolute IRI; no white space, '>', '{' or '}' gets through. */
+    static boolean isQueryableIri(String iri) {
+        if (iri == null) return false;
+        try {
+            return IRIx.create(iri).isAbsolute();
+        } catch (IRIException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Drops comments and collapses each run of white space to one space, leaving string literals
+     * and IRIs alone. An IRI is a '<' with a '>' before any white space; otherwise '<' is the
+     * less-than operator.
+     */
+    static String compact(String sparql) {
+        StringBuilder sb = new StringBuilder(sparql.length());
+        boolean space = false;
+        int n = sparql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sparql.charAt(i);
+            if (c == '#') {
+                while (i + 1 < n && sparql.charAt(i + 1) != '\n') i++;
+                space = sb.length() > 0;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            int end = i + 1;
+            if (c == '"' || c == '\'') {
+                while (end < n && sparql.charAt(end) != c) end += sparql.charAt(end) == '\\' ? 2 : 1;
+            } else if (c == '<') {
+                while (end < n && sparql.charAt(end) != '>' && !Character.isWhitespace(sparql.charAt(end))) end++;
+                if (end == n || sparql.charAt(end) != '>') end = i;
+            } else {
+                end = i;
+            }
+            end = Math.min(end, n - 1);
+            sb.append(sparql, i, end + 1);
+            i = end;
+        }
+        return sb.toString();
+    }
+}
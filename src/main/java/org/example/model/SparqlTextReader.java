@@ -0,0 +1,216 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Single-pass reader for the SPARQL 1.1 TSV and CSV results formats.
+ *
+ * Records are found in a refilled byte buffer and their fields are decoded straight from it:
+ * no line or field Strings are built except the values of the requested variables, which go to
+ * the same {@link SparqlJsonReader.RowHandler} as JSON rows. An empty field is an unbound value.
+ *
+ * TSV terms are written in Turtle syntax ({@code <iri>}, {@code "label"@en},
+ * {@code "42"^^<...>}); the reader keeps the IRI or lexical form only, as the JSON reader does.
+ * Virtuoso's variant (quoted header names, IRIs and literals in plain quotes, {@code ""} for a
+ * quote) is read as well. CSV fields follow RFC 4180.
+ */
+public final class SparqlTextReader {
+
+    private static final int BUFFER = 16 * 1024;
+
+    private final InputStream in;
+    private final boolean tsv;
+    private byte[] buf = new byte[BUFFER];
+    // unread bytes are buf[pos, limit)
+    private int pos;
+    private int limit;
+    // the current record, without its line break
+    private int recStart;
+    private int recEnd;
+    // unescaped copy of a field with escapes in it
+    private byte[] scratch = new byte[256];
+
+    private SparqlTextReader(InputStream in, boolean tsv) {
+        this.in = in;
+        this.tsv = tsv;
+    }
+
+    /** Reads a TSV ({@code tsv}) or CSV result; columns map to {@code vars} by the header. */
+    public static void read(InputStream in, String[] vars, boolean tsv, SparqlJsonReader.RowHandler handler)
+            throws IOException {
+        new SparqlTextReader(in, tsv).readAll(vars, handler);
+    }
+
+    private void readAll(String[] vars, SparqlJsonReader.RowHandler handler) throws IOException {
+        if (!nextRecord()) return;
+        skipByteOrderMark();
+        // column -> index in vars, or -1 for a variable not asked for
+        int[] columns = new int[8];
+        int n = 0;
+        for (int start = recStart; start <= recEnd; n++) {
+            int end = fieldEnd(start);
+            String name = value(start, end);
+            if (name != null && (name.startsWith("?") || name.startsWith("$"))) name = name.substring(1);
+            if (n == columns.length) columns = Arrays.copyOf(columns, n * 2);
+            columns[n] = name == null ? -1 : indexOf(vars, name);
+            start = end + 1;
+        }
+
+        String[] row = new String[vars.length];
+        while (nextRecord()) {
+            Arrays.fill(row, null);
+            int col = 0;
+            for (int start = recStart; start <= recEnd && col < n; col++) {
+                int end = fieldEnd(start);
+                int idx = columns[col];
+                if (idx >= 0) row[idx] = value(start, end);
+                start = end + 1;
+            }
+            handler.row(row);
+        }
+    }
+
+    private void skipByteOrderMark() {
+        if (recEnd - recStart >= 3 && (buf[recStart] & 0xFF) == 0xEF
+                && (buf[recStart + 1] & 0xFF) == 0xBB && (buf[recStart + 2] & 0xFF) == 0xBF) {
+            recStart += 3;
+        }
+    }
+
+    /** Finds the next record; false at the end of the stream. */
+    private boolean nextRecord() throws IOException {
+        int i = pos;
+        boolean quoted = false;
+        while (true) {
+            for (; i < limit; i++) {
+                byte b = buf[i];
+                // only CSV quotes can hide a line break; TSV escapes it
+                if (b == '"' && !tsv) {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    endRecord(i);
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            int shift = pos;
+            if (!fill()) {
+                if (pos == limit) return false;
+                endRecord(limit);
+                pos = limit;
+                return true;
+            }
+            i -= shift;
+        }
+    }
+
+    private void endRecord(int end) {
+        recStart = pos;
+        recEnd = end > pos && buf[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    /** Moves the unread bytes to the front, grows the buffer if they fill it, and reads more. */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) return false;
+        limit += n;
+        return true;
+    }
+
+    /** End (exclusive) of the field starting at {@code start} in the current record. */
+    private int fieldEnd(int start) {
+        boolean quoted = false;
+        for (int i = start; i < recEnd; i++) {
+            byte b = buf[i];
+            if (tsv) {
+                if (b == '\t') return i;
+            } else if (b == '"') {
+                quoted = !quoted;
+            } else if (b == ',' && !quoted) {
+                return i;
+            }
+        }
+        return recEnd;
+    }
+
+    /** The IRI or lexical form in buf[start, end); null when the field is empty. */
+    private String value(int start, int end) {
+        if (start >= end) return null;
+        byte first = buf[start];
+        if (tsv && first == '<' && buf[end - 1] == '>') {
+            return new String(buf, start + 1, end - start - 2, StandardCharsets.UTF_8);
+        }
+        if (first == '"') {
+            // TSV: after the closing quote may come @lang or ^^<datatype>, neither with a quote in it
+            int close = end - 1;
+            if (tsv) {
+                while (close > start && buf[close] != '"') close--;
+            }
+            if (close > start && buf[close] == '"') return unquote(start + 1, close);
+        }
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /** Decodes buf[start, end), undoing "" and (TSV only) backslash escapes. */
+    private String unquote(int start, int end) {
+        int i = start;
+        while (i < end && buf[i] != '"' && !(tsv && buf[i] == '\\')) i++;
+        if (i == end) return new String(buf, start, end - start, StandardCharsets.UTF_8);
+
+        if (scratch.length < end - start) scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        int n = i - start;
+        System.arraycopy(buf, start, scratch, 0, n);
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b == '"' && i + 1 < end && buf[i + 1] == '"') {
+                i++;
+            } else if (b == '\\' && tsv && i + 1 < end) {
+                byte e = buf[++i];
+                int digits = e == 'u' ? 4 : e == 'U' ? 8 : 0;
+                byte[] utf8 = digits > 0 && i + digits < end ? codePoint(i + 1, digits) : null;
+                if (utf8 != null) {
+                    System.arraycopy(utf8, 0, scratch, n, utf8.length);
+                    n += utf8.length;
+                    i += digits;
+                    continue;
+                }
+                b = switch (e) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    default -> e;
+                };
+            }
+            scratch[n++] = b;
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /** UTF-8 for the hex digits of a backslash-u or backslash-U escape; null when they are no code point. */
+    private byte[] codePoint(int start, int digits) {
+        try {
+            int cp = Integer.parseInt(new String(buf, start, digits, StandardCharsets.US_ASCII), 16);
+            return new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int indexOf(String[] vars, String name) {
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i].equals(name)) return i;
+        }
+        return -1;
+    }
+}
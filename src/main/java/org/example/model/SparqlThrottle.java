@@ -0,0 +1,218 @@
+package org.example.model;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client-side admission control for one SPARQL host, shared by every client in the process
+ * (public endpoints limit per source IP, not per client object).
+ *
+ * A request needs a token from a token bucket (steady rate, small burst) and a slot under an
+ * AIMD concurrency limit: each success raises the limit by 1/limit, roughly +1 per round of
+ * requests; 429, 503 or a timeout halve it, at most once per DECREASE_INTERVAL. A Retry-After
+ * from the host holds back every request to it until that time, for at most MAX_RETRY_AFTER.
+ * Waiters are served in order; async callers get a future instead of a blocked thread. A waiter
+ * not admitted by its deadline fails with {@link AdmissionTimeoutException}.
+ *
+ * Tuned with -Ddbpedia.rate (requests/s, default 20; 0 for no rate limit), -Ddbpedia.burst
+ * (default: the rate) and -Ddbpedia.maxConcurrency (default 32), read when a host is first seen.
+ */
+final class SparqlThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(SparqlThrottle.class);
+    private static final Map<String, SparqlThrottle> HOSTS = new ConcurrentHashMap<>();
+
+    private static final double INITIAL_LIMIT = 4;
+    private static final long MAX_PAUSE_NANOS = DbpediaClient.MAX_RETRY_AFTER.toNanos();
+    private static final long DECREASE_INTERVAL_NANOS = Duration.ofSeconds(1).toNanos();
+
+    /** Not admitted before the caller's deadline; the request was never sent. */
+    static final class AdmissionTimeoutException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AdmissionTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    enum Outcome {
+        /** The host answered normally (including 4xx for a bad query). */
+        OK,
+        /** 429, 503 or a timeout: the host is at its limit. */
+        OVERLOADED,
+        /** Some other failure; says nothing about load. */
+        FAILED,
+        /** Not sent, or given up before the answer; says nothing about load. */
+        CANCELLED
+    }
+
+    /** One admitted request; release exactly once. */
+    final class Permit {
+        private boolean released;
+
+        void release(Outcome outcome, long retryAfterNanos) {
+            synchronized (SparqlThrottle.this) {
+                if (released) return;
+                released = true;
+                inFlight--;
+                adjust(outcome, retryAfterNanos);
+            }
+            drain();
+        }
+    }
+
+    private final String host;
+    private final double rate;
+    private final double burst;
+    private final int maxLimit;
+
+    // guarded by this
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private double limit = INITIAL_LIMIT;
+    private int inFlight;
+    private long pausedUntil;
+    private long lastDecrease;
+    private long wakeAt;
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+    SparqlThrottle(String host, double rate, double burst, int maxLimit) {
+        this.host = host;
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.maxLimit = Math.max(1, maxLimit);
+        this.tokens = this.burst;
+        long now = System.nanoTime();
+        this.pausedUntil = now;
+        this.lastDecrease = now - DECREASE_INTERVAL_NANOS;
+    }
+
+    /** The throttle for the host of {@code url}. */
+    static SparqlThrottle forEndpoint(String url) {
+        String host = URI.create(url).getAuthority();
+        return HOSTS.computeIfAbsent(host == null ? url : host, h -> {
+            double rate = Double.parseDouble(System.getProperty("dbpedia.rate", "20"));
+            double burst = Double.parseDouble(System.getProperty("dbpedia.burst", String.valueOf(rate)));
+            int max = Integer.getInteger("dbpedia.maxConcurrency", 32);
+            return new SparqlThrottle(h, rate, burst, max);
+        });
+    }
+
+    /**
+     * Completes when the request may be sent, or with an {@link AdmissionTimeoutException} when
+     * that has not happened within {@code timeoutNanos}.
+     */
+    CompletableFuture<Permit> acquireAsync(long timeoutNanos) {
+        CompletableFuture<Permit> f = new CompletableFuture<>();
+        synchronized (this) {
+            waiters.addLast(f);
+        }
+        drain();
+        if (!f.isDone()) {
+            CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                // a waiter that is done is skipped by drain()
+                if (f.completeExceptionally(new AdmissionTimeoutException("SPARQL host " + host
+                        + " did not admit the request within " + timeoutNanos / 1_000_000 + " ms"))) {
+                    Metrics.increment("sparql.throttle.timeout");
+                }
+            });
+        }
+        return f;
+    }
+
+    /** Blocking {@link #acquireAsync}. */
+    Permit acquire(long timeoutNanos) throws IOException, InterruptedException {
+        CompletableFuture<Permit> f = acquireAsync(timeoutNanos);
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            // granted while we were being interrupted: hand the slot back
+            if (!f.cancel(false)) f.join().release(Outcome.CANCELLED, 0);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    private void adjust(Outcome outcome, long retryAfterNanos) {
+        long now = System.nanoTime();
+        // one answer must not hold the host back for hours; callers give up past the cap anyway
+        retryAfterNanos = Math.min(retryAfterNanos, MAX_PAUSE_NANOS);
+        if (retryAfterNanos > 0 && now + retryAfterNanos - pausedUntil > 0) {
+            pausedUntil = now + retryAfterNanos;
+            log.info("SPARQL host {} asked to wait {} ms", host, retryAfterNanos / 1_000_000);
+        }
+        if (outcome == Outcome.OK) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        } else if (outcome == Outcome.OVERLOADED && now - lastDecrease > DECREASE_INTERVAL_NANOS) {
+            lastDecrease = now;
+            limit = Math.max(1, limit / 2);
+            log.debug("SPARQL host {} overloaded, concurrency limit {}", host, (int) limit);
+        }
+        Metrics.gauge("sparql.concurrency.limit", (long) limit);
+    }
+
+    /** Grants what can be granted now; schedules a wake-up when waiting on time, not on a release. */
+    private void drain() {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+            while (!waiters.isEmpty()) {
+                if (waiters.peekFirst().isDone()) {
+                    waiters.pollFirst();
+                    continue;
+                }
+                if (inFlight >= (int) limit) break;
+                if (now - pausedUntil < 0) {
+                    wakeUp(pausedUntil - now);
+                    break;
+                }
+                if (rate > 0 && tokens < 1) {
+                    wakeUp((long) Math.ceil((1 - tokens) / rate * 1e9));
+                    break;
+                }
+                if (rate > 0) tokens--;
+                inFlight++;
+                granted.add(waiters.pollFirst());
+            }
+        }
+        // outside the lock: completing runs the caller's continuation on this thread
+        for (CompletableFuture<Permit> f : granted) {
+            Permit p = new Permit();
+            if (!f.complete(p)) p.release(Outcome.CANCELLED, 0);
+        }
+    }
+
+    private void wakeUp(long delayNanos) {
+        long at = System.nanoTime() + delayNanos;
+        if (wakeAt != 0 && wakeAt - at <= 0) return;
+        wakeAt = at;
+        Metrics.increment("sparql.throttled");
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            synchronized (this) {
+                if (wakeAt == at) wakeAt = 0;
+            }
+            drain();
+        });
+    }
+}
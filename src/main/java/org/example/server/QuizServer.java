@@ -0,0 +1,269 @@
+package org.example.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.model.Question;
+import org.example.model.QuizResult;
+import org.example.service.FactRepository;
+import org.example.service.QuizService;
+import org.example.service.gen.CountryQuestionGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Headless JSON API for the quiz, on the JDK HttpServer.
+ *
+ *   POST   /api/sessions               start a session          -> {id, total}
+ *   GET    /api/sessions/{id}/next     question to answer now   -> {index, total, prompt, options, thumbnail} | {done}
+ *   POST   /api/sessions/{id}/answer   {"selected": 0..3 | -1}  -> {correct, correctIndex, score}
+ *   GET    /api/sessions/{id}/result   score and review items
+ *   DELETE /api/sessions/{id}          end the session
+ *
+ * All sessions share one {@link FactRepository}; requests run on the executor passed in
+ * (see {@link RequestExecutors}). Sessions idle for SESSION_IDLE are dropped.
+ *
+ * Run with: java -cp <app classpath> org.example.server.QuizServer [port]
+ * (its own main class: the launcher refuses an Application subclass without the JavaFX modules).
+ */
+public class QuizServer {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizServer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final int QUESTIONS_PER_SESSION = 10;
+    private static final Duration QUESTION_WAIT = Duration.ofSeconds(15);
+    private static final Duration SESSION_IDLE = Duration.ofMinutes(30);
+    private static final String PREFIX = "/api/sessions";
+
+    /** A failure of the data source behind a request, as opposed to one talking to the client. */
+    private static final class UpstreamException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UpstreamException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private final FactRepository facts;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final Map<String, ServerSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "quiz-session-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public QuizServer(FactRepository facts, InetSocketAddress address, ExecutorService executor) throws IOException {
+        this.facts = facts;
+        this.executor = executor;
+        this.http = HttpServer.create(address, 1024);
+        http.setExecutor(executor);
+        http.createContext(PREFIX, this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // small JSON responses are written as headers + body; without TCP_NODELAY every request
+        // waits out the peer's delayed ACK (~40 ms). The JDK reads this once, when HttpServer is
+        // first used, so it is set here before that; -D on the command line takes precedence.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("quiz.server.port", DEFAULT_PORT);
+        ExecutorService executor = RequestExecutors.fromSystemProperties();
+        QuizServer server = new QuizServer(FactRepository.shared(), new InetSocketAddress(port), executor);
+        server.start();
+        log.info("Quiz server on port {} ({} executor)", server.port(), RequestExecutors.describe(executor));
+    }
+
+    public void start() {
+        long every = SESSION_IDLE.toMillis() / 10;
+        reaper.scheduleWithFixedDelay(this::dropIdleSessions, every, every, TimeUnit.MILLISECONDS);
+        http.start();
+    }
+
+    public void stop() {
+        http.stop(0);
+        reaper.shutdownNow();
+        sessions.values().forEach(ServerSession::close);
+        sessions.clear();
+        executor.shutdown();
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        // not try-with-resources: the error responses below still need the open exchange
+        try {
+            String method = ex.getRequestMethod();
+            String rest = ex.getRequestURI().getPath().substring(PREFIX.length());
+            // the context matches by prefix, so "/api/sessionsXYZ" lands here too
+            if (!rest.isEmpty() && !rest.startsWith("/")) {
+                send(ex, 404, error("no route for " + method + " " + ex.getRequestURI().getPath()));
+                return;
+            }
+            String[] parts = rest.split("/");
+            // "" -> [""], "/abc/next" -> ["", "abc", "next"]
+            if (parts.length <= 1) {
+                if (method.equals("POST")) startSession(ex);
+                else send(ex, 405, error("use POST to start a session"));
+                return;
+            }
+            ServerSession s = sessions.get(parts[1]);
+            if (s == null) {
+                send(ex, 404, error("unknown session"));
+                return;
+            }
+            String action = parts.length > 2 ? parts[2] : "";
+            switch (method + " " + action) {
+                case "GET next", "POST next" -> next(ex, s);
+                case "POST answer" -> answer(ex, s);
+                case "GET result" -> send(ex, 200, result(s.result()));
+                case "DELETE " -> {
+                    sessions.remove(s.id);
+                    s.close();
+                    send(ex, 200, Map.of("closed", true));
+                }
+                default -> send(ex, 404, error("no route for " + method + " " + ex.getRequestURI().getPath()));
+            }
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            send(ex, 409, error(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(ex, 503, error("interrupted"));
+        } catch (UpstreamException e) {
+            // details (endpoints, upstream error bodies) go to the log, not to the client
+            log.warn("Request {} failed upstream: {}", ex.getRequestURI(), e.getCause().toString());
+            send(ex, 502, error("quiz data source unavailable"));
+        } catch (IOException e) {
+            // the client went away mid-response; nothing left to send it
+            log.debug("Request {}: writing the response failed: {}", ex.getRequestURI(), e.toString());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void startSession(HttpExchange ex) throws IOException, InterruptedException, UpstreamException {
+        QuizService service = new QuizService(facts, new CountryQuestionGenerator(new Random()), 6);
+        try {
+            service.preload();
+        } catch (IOException e) {
+            service.close();
+            throw new UpstreamException(e);
+        } catch (InterruptedException | RuntimeException e) {
+            service.close();
+            throw e;
+        }
+        ServerSession s = new ServerSession(UUID.randomUUID().toString(), service, QUESTIONS_PER_SESSION);
+        sessions.put(s.id, s);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", s.id);
+        body.put("total", s.maxQuestions());
+        send(ex, 201, body);
+    }
+
+    private void next(HttpExchange ex, ServerSession s) throws IOException, InterruptedException {
+        Optional<Question> q = s.next(QUESTION_WAIT);
+        Map<String, Object> body = new LinkedHashMap<>();
+        if (q.isEmpty()) {
+            body.put("done", true);
+            body.put("score", s.score());
+            send(ex, 200, body);
+            return;
+        }
+        Question question = q.get();
+        body.put("index", s.index());
+        body.put("total", s.maxQuestions());
+        body.put("type", String.valueOf(question.getType()));
+        body.put("prompt", question.getPrompt());
+        body.put("options", question.getOptions());
+        body.put("thumbnail", question.getMeta().get("thumbnail"));
+        send(ex, 200, body);
+    }
+
+    private void answer(HttpExchange ex, ServerSession s) throws IOException {
+        JsonNode in;
+        try (InputStream body = ex.getRequestBody()) {
+            in = MAPPER.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("body must be JSON like {\"selected\": 2}");
+        }
+        if (in == null || !in.path("selected").canConvertToInt()) {
+            throw new IllegalArgumentException("body must be JSON like {\"selected\": 2}");
+        }
+        boolean correct = s.answer(in.get("selected").asInt());
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("correct", correct);
+        out.put("correctIndex", s.current().getCorrectIndex());
+        out.put("score", s.score());
+        send(ex, 200, out);
+    }
+
+    private static Map<String, Object> result(QuizResult r) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("score", r.getScore());
+        out.put("total", r.getTotal());
+        out.put("accuracy", r.getAccuracy());
+        out.put("items", r.getItems().stream().map(it -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("prompt", it.getPrompt());
+            m.put("options", it.getOptions());
+            m.put("correctIndex", it.getCorrectIndex());
+            m.put("selectedIndex", it.getSelectedIndex());
+            m.put("thumbnail", it.getThumbnail());
+            return m;
+        }).toList());
+        return out;
+    }
+
+    private void dropIdleSessions() {
+        long limit = SESSION_IDLE.toNanos();
+        List<ServerSession> idle = sessions.values().stream().filter(s -> s.idleNanos() > limit).toList();
+        for (ServerSession s : idle) {
+            if (sessions.remove(s.id, s)) s.close();
+        }
+        if (!idle.isEmpty()) log.info("Dropped {} idle sessions, {} active", idle.size(), sessions.size());
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Map.of("error", String.valueOf(message));
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=" + StandardCharsets.UTF_8.name());
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for handling HTTP requests.
+ *
+ * Handlers block (waiting for the next question, fetching facts), so on Java 21+ the default is
+ * one virtual thread per request. On older runtimes it is a bounded pool; when pool and queue
+ * are full the accepting thread runs the request itself, which pushes back on new connections
+ * instead of dropping them. The project compiles for Java 17, so virtual threads are looked up
+ * reflectively.
+ *
+ * Chosen with -Dquiz.server.executor=auto|virtual|pool and -Dquiz.server.threads=N.
+ */
+public final class RequestExecutors {
+
+    private RequestExecutors() {}
+
+    public static ExecutorService fromSystemProperties() {
+        String mode = System.getProperty("quiz.server.executor", "auto").trim().toLowerCase();
+        int threads = Integer.getInteger("quiz.server.threads",
+                Math.max(16, Runtime.getRuntime().availableProcessors() * 8));
+        switch (mode) {
+            case "pool":
+                return bounded(threads, threads * 16);
+            case "virtual": {
+                ExecutorService v = virtualThreads();
+                if (v == null) throw new IllegalStateException("Virtual threads need Java 21+, running "
+                        + Runtime.version());
+                return v;
+            }
+            default: {
+                ExecutorService v = virtualThreads();
+                return v != null ? v : bounded(threads, threads * 16);
+            }
+        }
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor() when the runtime has it, else null. */
+    public static ExecutorService virtualThreads() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static ExecutorService bounded(int threads, int queueCapacity) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "quiz-http-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /** Short name for logs: "virtual" or "pool(N)". */
+    public static String describe(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor pool) return "pool(" + pool.getMaximumPoolSize() + ")";
+        return executor.getClass().getSimpleName().contains("ThreadPerTask") ? "virtual" : executor.toString();
+    }
+}
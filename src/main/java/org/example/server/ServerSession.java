@@ -0,0 +1,95 @@
+package org.example.server;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.example.model.Question;
+import org.example.model.QuizResult;
+import org.example.service.QuizService;
+
+/**
+ * State of one remote player, with the same rules as the JavaFX quiz screen: a fixed number of
+ * questions, one answer per question, score and review items for the result.
+ *
+ * Calls for one session are serialized; different sessions never share a lock.
+ */
+final class ServerSession {
+
+    final String id;
+    private final QuizService service;
+    private final int maxQuestions;
+
+    private Question current;
+    private boolean answered = true;
+    private int index;
+    private int score;
+    private final List<QuizResult.Item> items = new ArrayList<>();
+    private volatile long lastAccess = System.nanoTime();
+
+    ServerSession(String id, QuizService service, int maxQuestions) {
+        this.id = id;
+        this.service = service;
+        this.maxQuestions = maxQuestions;
+    }
+
+    /**
+     * The question to answer now: the pending one if it has not been answered yet (so a retried
+     * request gets the same question), else the next one. Empty when the quiz is over.
+     */
+    synchronized Optional<Question> next(Duration wait) throws InterruptedException {
+        touch();
+        if (!answered) return Optional.of(current);
+        if (index >= maxQuestions) return Optional.empty();
+        Optional<Question> q = service.getNextQuestion(wait);
+        if (q.isEmpty()) {
+            // service ran out early: the quiz ends here, like on the desktop screen
+            index = maxQuestions;
+            return q;
+        }
+        current = q.get();
+        answered = false;
+        index++;
+        return q;
+    }
+
+    /** Scores the pending question; -1 skips it. Returns whether the answer was right. */
+    synchronized boolean answer(int selected) {
+        touch();
+        if (current == null || answered) throw new IllegalStateException("No question to answer");
+        if (selected < -1 || selected >= current.getOptions().size()) {
+            throw new IllegalArgumentException("selected must be -1.." + (current.getOptions().size() - 1));
+        }
+        boolean correct = selected != -1 && selected == current.getCorrectIndex();
+        if (correct) score++;
+        answered = true;
+        items.add(new QuizResult.Item(current.getPrompt(), current.getOptions(), current.getCorrectIndex(),
+                selected, current.getMeta().getOrDefault("explain", ""),
+                current.getMeta().getOrDefault("thumbnail", "")));
+        return correct;
+    }
+
+    synchronized Question current() { return current; }
+    synchronized int index() { return index; }
+    synchronized int score() { return score; }
+    int maxQuestions() { return maxQuestions; }
+
+    synchronized QuizResult result() {
+        touch();
+        // copied under the lock: later answers must not show up in (or break) a returned result
+        return new QuizResult(score, items.size(), List.copyOf(items));
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastAccess;
+    }
+
+    void close() {
+        service.close();
+    }
+
+    private void touch() {
+        lastAccess = System.nanoTime();
+    }
+}
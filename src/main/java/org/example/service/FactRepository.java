@@ -0,0 +1,193 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.example.model.DbpediaClient;
+import org.example.model.FactStore;
+import org.example.model.LocalDataset;
+import org.example.model.SingleFlight;
+import org.example.model.asianCountry.CountryFact;
+import org.example.service.gen.DistractorIndex;
+
+/**
+ * Process-wide pool of country facts and capital names, shared by every quiz session.
+ *
+ * Facts are append-only: a country keeps its id forever, so a session only needs to remember
+ * how far into the id range it has looked (see QuizService). A session that runs out asks for
+ * more with {@link #fetchBeyond}; if another session already brought new facts it returns at
+ * once, otherwise one batch is fetched for all concurrent callers. Upstream traffic and memory
+ * therefore grow with the data, not with the number of sessions.
+ *
+ * One query per fetch: the fact rows carry every attribute the question types use, and the
+ * capital pool for distractors is built from the capitals in those rows, so it always matches
+ * the facts. It holds only capitals of countries fetched so far and grows with them; every
+ * country in the pool has its capital there, so a capital question always has distractors
+ * once four countries with capitals are held.
+ *
+ * Reads take a read lock; merging a batch takes the write lock and re-indexes distractors.
+ * With a local dataset, {@link #refresh} (run by SnapshotRefresher) updates the facts of
+ * countries that changed upstream in place; sessions keep the DistractorIndex they hold.
+ */
+public class FactRepository {
+
+    private static volatile FactRepository shared;
+
+    // after this many batches in a row brought no new country, stop fetching for a while:
+    // random pages can repeat known countries long before the category is all held
+    private static final int MAX_FRUITLESS_FETCHES = 3;
+    private static final long EXHAUSTED_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final String FETCH_KEY = "fetch";
+
+    private final DbpediaClient db;
+    private final int batchSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FactStore store = new FactStore();
+    private volatile DistractorIndex distractors = DistractorIndex.build(List.of(), List.of());
+
+    private final SingleFlight<String> fetches = new SingleFlight<>();
+    private volatile int fruitlessFetches;
+    private volatile long exhaustedAt;
+
+    /**
+     * @param db         client used for every fetch
+     * @param batchSize  facts requested per fetch
+     */
+    public FactRepository(DbpediaClient db, int batchSize) {
+        this.db = db;
+        this.batchSize = Math.max(8, batchSize);
+    }
+
+    /** The repository used by the app, backed by {@link DbpediaClient#createDefault()}. */
+    public static FactRepository shared() {
+        if (shared == null) {
+            synchronized (FactRepository.class) {
+                if (shared == null) {
+                    shared = new FactRepository(DbpediaClient.createDefault(), 16);
+                    SnapshotRefresher.startIfConfigured(shared);
+                }
+            }
+        }
+        return shared;
+    }
+
+    public DbpediaClient client() {
+        return db;
+    }
+
+    /** Number of facts; valid ids are 0..size-1. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CountryFact fact(int id) {
+        lock.readLock().lock();
+        try {
+            return store.fact(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Copy of all facts fetched so far, in id order. */
+    public List<CountryFact> snapshot() {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(store.factView());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Distractor pools over everything fetched so far; replaced (not mutated) on change. */
+    public DistractorIndex distractors() {
+        return distractors;
+    }
+
+    /**
+     * True for a few minutes after several fetches in a row found nothing new; fetches are
+     * skipped meanwhile. After that one more fetch is tried, and a fruitless one starts
+     * another pause.
+     */
+    public boolean isExhausted() {
+        return fruitlessFetches >= MAX_FRUITLESS_FETCHES && System.nanoTime() - exhaustedAt < EXHAUSTED_NANOS;
+    }
+
+    /**
+     * Makes sure there are facts with ids at or above {@code seen} if any can be had.
+     * Returns the new size, which is still {@code seen} when nothing more was found.
+     */
+    public int fetchBeyond(int seen) throws IOException, InterruptedException {
+        int n = size();
+        if (n > seen || isExhausted()) return n;
+        fetches.run(FETCH_KEY, () -> {
+            // another caller may have finished a fetch between the check and here
+            if (size() <= seen) fetchAndMerge();
+            return Boolean.TRUE;
+        });
+        return size();
+    }
+
+    /**
+     * Updates the local dataset from upstream, then re-reads the changed countries this
+     * repository already holds, in one query. New countries come in through later fetches.
+     * Returns how many held countries were re-read; 0 when the client is not local.
+     */
+    public int refresh() throws IOException, InterruptedException {
+        LocalDataset.Refresh changes = db.refreshLocal();
+        if (changes == null || changes.isEmpty()) return 0;
+        List<String> held = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String uri : changes.updated) {
+                if (store.contains(uri)) held.add(uri);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // countries came or went: the "nothing new" verdict is out of date
+        fruitlessFetches = 0;
+        if (held.isEmpty()) return 0;
+        List<CountryFact> facts = db.getAsianCountryFacts(held);
+        merge(facts, false);
+        return held.size();
+    }
+
+    private void fetchAndMerge() throws IOException, InterruptedException {
+        merge(DbpediaClient.await(db.getRandomAsianCountryFactsAsync(batchSize)), true);
+    }
+
+    /** @param fetched a fetch for new countries, which counts towards {@link #isExhausted} */
+    private void merge(List<CountryFact> facts, boolean fetched) {
+        lock.writeLock().lock();
+        try {
+            int before = store.size();
+            boolean changed = false;
+            for (CountryFact f : facts) {
+                // the parser drops rows without a label; a blank one is no more usable
+                if (f.getCountry() == null || f.getCountry().isBlank()) continue;
+                changed |= store.upsert(f);
+            }
+            if (fetched) {
+                fruitlessFetches = store.size() > before ? 0 : fruitlessFetches + 1;
+                if (fruitlessFetches >= MAX_FRUITLESS_FETCHES) exhaustedAt = System.nanoTime();
+            }
+
+            // pools or attributes (e.g. a population filled in) changed: re-index distractors
+            // once here instead of scanning per question
+            if (changed) distractors = DistractorIndex.build(store.factView(), store.capitalView());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
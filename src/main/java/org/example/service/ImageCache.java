@@ -0,0 +1,220 @@
+package org.example.service;
+
+import javafx.scene.image.Image;
+import org.example.model.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thumbnail cache shared by all quiz screens.
+ *
+ * Raw image bytes are kept on disk keyed by URL; decoded images are kept in memory, already
+ * scaled to the size they are shown at, in an LRU bounded by total pixel count. Loads for the
+ * same image are coalesced, and upcoming thumbnails can be prefetched in the background.
+ */
+public class ImageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageCache.class);
+
+    private static volatile ImageCache defaultCache;
+
+    private final Path dir;
+    private final long pixelBudget;
+    private final long maxDiskBytes;
+    private final Map<String, Image> decoded = new LinkedHashMap<>(16, 0.75f, true);
+    private long pixels;
+    private final Object diskLock = new Object();
+    private final SingleFlight<String> loads = new SingleFlight<>();
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(8))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private final ExecutorService io = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "thumbnail-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param dir           directory for raw bytes, or null for memory only
+     * @param pixelBudget   total pixels of decoded images kept in memory
+     * @param maxDiskBytes  size the directory is trimmed to after each write
+     */
+    public ImageCache(Path dir, long pixelBudget, long maxDiskBytes) {
+        this.dir = dir;
+        this.pixelBudget = pixelBudget;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /** Process-wide cache under ~/.dbpedia-quiz/thumbnails, about 64 thumbnails of 200x200. */
+    public static ImageCache getDefault() {
+        if (defaultCache == null) {
+            synchronized (ImageCache.class) {
+                if (defaultCache == null) {
+                    Path dir = Path.of(System.getProperty("user.home"), ".dbpedia-quiz", "thumbnails");
+                    defaultCache = new ImageCache(dir, 64L * 200 * 200, 64L * 1024 * 1024);
+                }
+            }
+        }
+        return defaultCache;
+    }
+
+    /** Decoded image if it is already in memory, else null. */
+    public synchronized Image getIfReady(String url, double width, double height) {
+        return decoded.get(key(url, width, height));
+    }
+
+    /** Decoded image scaled to fit width x height; completes with null if it cannot be loaded. */
+    public CompletableFuture<Image> load(String url, double width, double height) {
+        String key = key(url, width, height);
+        Image hit = getIfReady(url, width, height);
+        if (hit != null) return CompletableFuture.completedFuture(hit);
+
+        return loads.runAsync(key, () -> bytes(url)
+                        .thenApplyAsync(b -> decode(b, width, height), io)
+                        .thenApply(img -> {
+                            if (img != null) put(key, img);
+                            return img;
+                        }))
+                .exceptionally(e -> null);
+    }
+
+    public void prefetch(Collection<String> urls, double width, double height) {
+        for (String url : urls) {
+            if (url != null && !url.isBlank()) load(url, width, height);
+        }
+    }
+
+    private static Image decode(byte[] bytes, double width, double height) {
+        Image img = new Image(new ByteArrayInputStream(bytes), width, height, true, true);
+        return img.isError() ? null : img;
+    }
+
+    private synchronized void put(String key, Image img) {
+        Image old = decoded.put(key, img);
+        if (old != null) pixels -= pixelCount(old);
+        pixels += pixelCount(img);
+        Iterator<Image> it = decoded.values().iterator();
+        while (pixels > pixelBudget && decoded.size() > 1 && it.hasNext()) {
+            Image eldest = it.next();
+            if (eldest == img) break;
+            pixels -= pixelCount(eldest);
+            it.remove();
+        }
+    }
+
+    private static long pixelCount(Image img) {
+        return (long) img.getWidth() * (long) img.getHeight();
+    }
+
+    private CompletableFuture<byte[]> bytes(String url) {
+        Path file = dir == null ? null : dir.resolve(hash(url));
+        if (file != null && Files.isRegularFile(file)) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Files.readAllBytes(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, io);
+        }
+
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(15))
+                .GET()
+                .build();
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray()).thenApplyAsync(resp -> {
+            if (resp.statusCode() / 100 != 2) {
+                throw new UncheckedIOException(new IOException("Thumbnail HTTP " + resp.statusCode() + ": " + url));
+            }
+            if (file != null) store(file, resp.body());
+            return resp.body();
+        }, io);
+    }
+
+    private void store(Path file, byte[] body) {
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "img", ".tmp");
+            Files.write(tmp, body);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trimDisk();
+        } catch (IOException e) {
+            // disk level is best effort
+            log.warn("Thumbnail cache write failed: {}", e.getMessage());
+        }
+    }
+
+    private void trimDisk() throws IOException {
+        synchronized (diskLock) {
+            trimDiskLocked();
+        }
+    }
+
+    private void trimDiskLocked() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> !p.getFileName().toString().endsWith(".tmp"))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        long total = 0;
+        for (Path p : files) total += Files.size(p);
+        if (total <= maxDiskBytes) return;
+
+        files.sort(Comparator.comparingLong(ImageCache::lastModified));
+        for (Path p : files) {
+            if (total <= maxDiskBytes) break;
+            total -= Files.size(p);
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static String key(String url, double width, double height) {
+        return (int) width + "x" + (int) height + " " + url;
+    }
+
+    private static String hash(String url) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,29 +1,87 @@
 package org.example.service;
 
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Switches the main stage between screens. Each FXML file is parsed once; its root, controller
+ * and Scene are kept and shown again on later visits. Controllers that keep per-visit state
+ * implement {@link Lifecycle} to clear and restart it instead of being rebuilt.
+ * FX application thread only.
+ */
 public class Navigation {
 
     public static Stage mainStage;
 
+    private static final Map<String, Screen> screens = new HashMap<>();
+
+    /** Hooks for controllers of cached screens. */
+    public interface Lifecycle {
+        /** Clears what the previous visit left behind. Not called before the first visit. */
+        default void reset() {}
+
+        /** Called each time the screen is shown, after {@link #reset()}. */
+        default void activate() {}
+    }
+
+    private static final class Screen {
+        final Object controller;
+        final Scene scene;
+        boolean visited;
+
+        Screen(Parent root, Object controller) {
+            this.controller = controller;
+            this.scene = new Scene(root);
+        }
+    }
+
     public static void setStage(Stage stage) {
         mainStage = stage;
     }
 
     public static void navigateTo(String fxmlPath){
         try {
-            FXMLLoader loader = new FXMLLoader(Navigation.class.getResource(fxmlPath));
-            Parent root = loader.load();
-            mainStage.setScene(new Scene(root));
+            Screen screen = screen(fxmlPath);
+            Lifecycle hooks = screen.controller instanceof Lifecycle l ? l : null;
+            if (hooks != null && screen.visited) hooks.reset();
+            screen.visited = true;
+            mainStage.setScene(screen.scene);
             mainStage.show();
+            if (hooks != null) hooks.activate();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-}
\ No newline at end of file
+    /** Parses the given screens once the current event is handled, so the first visit is instant too. */
+    public static void preload(String... fxmlPaths) {
+        Platform.runLater(() -> {
+            for (String path : fxmlPaths) {
+                try {
+                    screen(path);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private static Screen screen(String fxmlPath) throws IOException {
+        Screen screen = screens.get(fxmlPath);
+        if (screen == null) {
+            FXMLLoader loader = new FXMLLoader(Navigation.class.getResource(fxmlPath));
+            Parent root = loader.load();
+            screen = new Screen(root, loader.getController());
+            screens.put(fxmlPath, screen);
+        }
+        return screen;
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.example.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.example.model.Question;
+import org.example.service.pack.PackQuestionSource;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where a quiz screen gets its questions: generated live from DBpedia facts ({@link QuizService})
+ * or read from a pre-built pack file ({@link PackQuestionSource}).
+ */
+public interface QuestionSource {
+
+    /** Call once when the quiz starts; may block until the first questions can be served. */
+    void preload() throws IOException, InterruptedException;
+
+    /** Next question without waiting; empty when none is ready right now. */
+    Optional<Question> pollNextQuestion();
+
+    Optional<Question> getNextQuestion() throws InterruptedException;
+
+    /** Next question, waiting at most {@code timeout}; empty when the source has run out. */
+    Optional<Question> getNextQuestion(Duration timeout) throws InterruptedException;
+
+    /** Up to n questions that will be served next, in order, without consuming them. */
+    List<Question> peekUpcoming(int n);
+
+    void close();
+
+    /**
+     * The source for the desktop app: the pack file named by -Dquiz.pack when set and readable,
+     * otherwise a live session on the shared repository.
+     */
+    static QuestionSource forApp() {
+        String pack = System.getProperty("quiz.pack");
+        if (pack != null && !pack.isBlank()) {
+            try {
+                return PackQuestionSource.open(Path.of(pack));
+            } catch (IOException | RuntimeException e) {
+                LoggerFactory.getLogger(QuestionSource.class)
+                        .warn("Cannot use quiz pack {}, generating live: {}", pack, e.toString());
+            }
+        }
+        return new QuizService();
+    }
+}
@@ -1,129 +1,282 @@
 package org.example.service;
 
+import org.example.metrics.QuizEvents;
 import org.example.model.*;
 import org.example.model.asianCountry.CountryFact;
 import org.example.service.gen.CountryQuestionGenerator;
 
 import java.io.IOException;
-import java.time.Duration;
 import java.util.*;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-public class QuizService {
-    private DbpediaClient db = new DbpediaClient();
+/**
+ * One quiz session. Facts, distractors and the HTTP client live in a shared
+ * {@link FactRepository}; the session itself only keeps a cursor into the repository's ids,
+ * the ids it has queued but not asked yet, the ids it has asked, and a small buffer of
+ * ready questions.
+ */
+public class QuizService implements QuestionSource {
+    private static final Logger log = LoggerFactory.getLogger(QuizService.class);
+
+    private final FactRepository facts;
     private final CountryQuestionGenerator generator;
     private final Random rnd;
 
-    private final int preloadSize;
     private final int refillThreshold;
 
-    private final List<CountryFact> factPool = new ArrayList<>();
-    private final List<String> capitalPool = new ArrayList<>();
-    private final Deque<CountryFact> queue = new ArrayDeque<>();
-    private final Set<String> usedCountryList = new HashSet<>();
+    // repository ids below `seen` have already been queued (or skipped) by this session
+    private int seen;
+    // ids of facts not yet turned into questions
+    private final Deque<Integer> queue = new ArrayDeque<>();
+    // ids already asked in this session
+    private final BitSet used = new BitSet();
+
+    // prefetch buffer of built questions, kept above LOW_WATERMARK by a background refiller
+    private static final int READY_CAPACITY = 8;
+    private static final int LOW_WATERMARK = 3;
+    private static final Duration DEFAULT_WAIT = Duration.ofSeconds(30);
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final String PRELOAD_KEY = "preload";
+    private final SingleFlight<String> preloads = new SingleFlight<>();
+
+    private final BlockingQueue<Question> ready = new ArrayBlockingQueue<>(READY_CAPACITY);
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private volatile boolean drained;
+    private volatile boolean closed;
+    private volatile Future<?> refillTask;
+    // refills of all sessions share these threads; each session has at most one refill running
+    private static final ExecutorService REFILLERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "quiz-refill");
+        t.setDaemon(true);
+        return t;
+    });
 
     public QuizService() {
-        this(new DbpediaClient(DbpediaClient.DEFAULT_ENDPOINT, Duration.ofSeconds(12), 2),
+        this(FactRepository.shared(),
                 new CountryQuestionGenerator(new Random()),
-                16,    // preload 16 facts
                 6      // when <=6 left, refill
         );
     }
 
-    public QuizService(DbpediaClient db, CountryQuestionGenerator generator,
-                       int preloadSize, int refillThreshold) {
-        this.db = Objects.requireNonNull(db);
+    public QuizService(FactRepository facts, CountryQuestionGenerator generator, int refillThreshold) {
+        this.facts = Objects.requireNonNull(facts);
         this.generator = Objects.requireNonNull(generator);
-        this.preloadSize = Math.max(8, preloadSize);
         this.refillThreshold = Math.max(4, refillThreshold);
         this.rnd = new Random();
     }
 
+    /** Session with its own private repository over {@code db}, fetching preloadSize facts at a time. */
+    public QuizService(DbpediaClient db, CountryQuestionGenerator generator,
+                       int preloadSize, int refillThreshold) {
+        this(new FactRepository(Objects.requireNonNull(db), preloadSize), generator, refillThreshold);
+    }
+
     //call once when the quiz starts
-    public synchronized void preload() throws IOException, InterruptedException {
-        List<CountryFact> fatcts = db.getRandomAsianCountryFacts(preloadSize);
-
-        fatcts.removeIf(f -> isBlank(f.getCountry()));
-        for(CountryFact f:fatcts) {
-            if(f.getCountryUri() != null && usedCountryList.contains(f.getCountryUri())) continue;
-            if(f.getCountryUri() != null && factPool.stream().anyMatch(x -> f.getCountryUri().equals(x.getCountryUri()))) continue;
-            factPool.add(f);
-            queue.addLast(f);
+    // Concurrent callers (controller + refiller) join the preload already running.
+    @Override
+    public void preload() throws IOException, InterruptedException {
+        QuizEvents.Preload ev = QuizEvents.Preload.start();
+        try {
+            preloads.run(PRELOAD_KEY, () -> {
+                pullNew();
+                // only go upstream when what the repository already has is not enough
+                if (queueSize() <= refillThreshold) {
+                    facts.fetchBeyond(cursor());
+                    pullNew();
+                }
+                return Boolean.TRUE;
+            });
+        } finally {
+            ev.finish(queueSize());
         }
+        requestRefill();
+    }
 
-        List<String> capitals = db.getAsianCapitalName(preloadSize*2);
-        System.out.println(capitals);
-        capitals.removeIf(QuizService::isBlank);
-
-        Set<String> seen = new HashSet<>(capitalPool.size() + capitals.size());
-        capitalPool.forEach(c -> seen.add(c.toLowerCase(Locale.ROOT).trim()));
-        for(String c: capitals) {
-            String key = c.toLowerCase(Locale.ROOT).trim();
-            if(!seen.contains(key)) {
-                capitalPool.add(c);
-                seen.add(key);
-            }
+    private synchronized int cursor() {
+        return seen;
+    }
+
+    /** Queues the repository ids this session has not looked at yet. */
+    private synchronized void pullNew() {
+        int n = facts.size();
+        if (n <= seen) return;
+        for (int id = seen; id < n; id++) {
+            if (!used.get(id)) queue.addLast(id);
         }
+        seen = n;
 
         //Shuffle
-        List<CountryFact> tmp = new ArrayList<>(queue);
+        List<Integer> tmp = new ArrayList<>(queue);
         queue.clear();
         Collections.shuffle(tmp, rnd);
         tmp.forEach(queue::addLast);
     }
 
-    public synchronized Optional<Question> getNextQuestion() throws IOException, InterruptedException {
-        ensureRefillIfNeeded();
+    /** Next ready question without waiting; empty when the buffer is momentarily dry. */
+    @Override
+    public Optional<Question> pollNextQuestion() {
+        Question q = ready.poll();
+        recordDepth();
+        if (ready.size() <= LOW_WATERMARK) requestRefill();
+        return Optional.ofNullable(q);
+    }
+
+    @Override
+    public Optional<Question> getNextQuestion() throws InterruptedException {
+        return getNextQuestion(DEFAULT_WAIT);
+    }
+
+    /**
+     * Takes the next question from the prefetch buffer, waiting at most {@code timeout} for the
+     * background refiller. Returns empty early once the refiller has run out of facts.
+     */
+    @Override
+    public Optional<Question> getNextQuestion(Duration timeout) throws InterruptedException {
+        Optional<Question> q = pollNextQuestion();
+        if (q.isPresent()) return q;
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return Optional.empty();
+            Question next = ready.poll(Math.min(left, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                if (ready.size() <= LOW_WATERMARK) requestRefill();
+                return Optional.of(next);
+            }
+            if (drained && !refilling.get() && ready.isEmpty()) return Optional.empty();
+        }
+    }
+
+    /** Up to n questions waiting in the buffer, in the order they will be served. */
+    @Override
+    public List<Question> peekUpcoming(int n) {
+        List<Question> out = new ArrayList<>(n);
+        for (Question q : ready) {
+            if (out.size() >= n) break;
+            out.add(q);
+        }
+        return out;
+    }
+
+    /**
+     * Stops the background refiller. A refill that is already running is not interrupted, since
+     * it may be leading a repository fetch other sessions are waiting on; it stops at its next check.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Future<?> task = refillTask;
+        if (task != null) task.cancel(false);
+    }
+
+    private void requestRefill() {
+        if (closed || !refilling.compareAndSet(false, true)) return;
+        drained = false;
+        refillTask = REFILLERS.submit(this::refill);
+    }
 
+    /**
+     * Producer side: tops the buffer up to capacity, fetching facts (outside the lock) when
+     * the fact queue is low. Ends "drained" if nothing more can be built.
+     */
+    private void refill() {
+        boolean fetched = false;
+        boolean dry = false;
+        try {
+            while (ready.remainingCapacity() > 0 && !closed && !Thread.currentThread().isInterrupted()) {
+                if (!fetched && queueSize() <= refillThreshold) {
+                    preload();
+                    fetched = true;
+                }
+                Optional<Question> q = buildNext();
+                if (q.isEmpty()) {
+                    if (fetched) {
+                        dry = true;
+                        break;
+                    }
+                    preload();
+                    fetched = true;
+                    continue;
+                }
+                ready.offer(q.get());
+            }
+        } catch (IOException e) {
+            log.warn("Question refill failed: {}", e.getMessage());
+            dry = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Question refill failed", e);
+            dry = true;
+        } finally {
+            recordDepth();
+            drained = dry;
+            refilling.set(false);
+        }
+    }
+
+    private void recordDepth() {
+        // queueSize() takes the lock, so only when someone is listening
+        if (QuizEvents.QueueDepth.wanted()) QuizEvents.QueueDepth.record(ready.size(), queueSize());
+    }
+
+    private synchronized int queueSize() {
+        return queue.size();
+    }
+
+    private synchronized Optional<Question> buildNext() {
         int attempts = Math.max(8, queue.size());
         while(attempts--> 0 & !queue.isEmpty()) {
-            CountryFact fact = queue.pollFirst();
-            if(fact == null) break;
+            Integer id = queue.pollFirst();
+            if(id == null) break;
 
-            if(fact.getCountryUri() != null && usedCountryList.contains(fact.getCountryUri())) continue;
+            if(used.get(id)) continue;
 
-            Optional<Question> q = generator.generate(fact, factPool, capitalPool);
+            Optional<Question> q = generate(id);
             if(q.isPresent()) {
-                if(fact.getCountryUri() != null) usedCountryList.add(fact.getCountryUri());
+                used.set(id);
                 return q;
             }
         }
 
-        if(queue.isEmpty()) {
-            preload();
-            if(!queue.isEmpty()) {
-                return getNextQuestion();
-            }
-        }
-
         return tryBuildFrom(new ArrayList<>(queue));
     }
 
 
-    private Optional<Question> tryBuildFrom(List<CountryFact> candidates) {
+    private Optional<Question> tryBuildFrom(List<Integer> candidates) {
         Collections.shuffle(candidates, rnd);
-        for (CountryFact fact : candidates) {
-            if (fact.getCountryUri() != null && usedCountryList.contains(fact.getCountryUri())) continue;
-            var q = generator.generate(fact, factPool, capitalPool);
+        for (Integer id : candidates) {
+            if (used.get(id)) continue;
+            var q = generate(id);
+            // Drop the fact from the queue whether or not it was usable
+            queue.remove(id);
             if (q.isPresent()) {
-                if (fact.getCountryUri() != null) usedCountryList.add(fact.getCountryUri());
-                queue.remove(fact);
+                used.set(id);
                 return q;
-            } else {
-                // Drop unusable fact from queue
-                queue.remove(fact);
             }
         }
         return Optional.empty();
     }
 
-
-    private void ensureRefillIfNeeded() throws IOException, InterruptedException {
-        if (queue.size() <= refillThreshold) {
-            preload();
-        }
+    private Optional<Question> generate(int id) {
+        QuizEvents.Generate ev = QuizEvents.Generate.start();
+        CountryFact fact = facts.fact(id);
+        Optional<Question> q = generator.generate(fact, facts.distractors());
+        ev.finish(fact.getCountry(), q.isPresent());
+        return q;
     }
 
-    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
-
 
 }
\ No newline at end of file
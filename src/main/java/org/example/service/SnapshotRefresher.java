@@ -0,0 +1,74 @@
+package org.example.service;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the local DBpedia snapshot (-Ddbpedia.local) from going stale: a daemon thread runs
+ * {@link FactRepository#refresh} a minute after start, for copies reused from an earlier run,
+ * and then every -Ddbpedia.local.refreshMinutes (default 360; 0 turns it off).
+ *
+ * A refresh costs one marker query plus a query for the changed countries, and the swap is a
+ * single transaction, so running quizzes are neither blocked nor shown a half-updated copy.
+ * A failed refresh (after the client's own retries) is tried again after RETRY_DELAY, doubling
+ * while it keeps failing, up to the regular interval.
+ */
+final class SnapshotRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotRefresher.class);
+    private static final Duration FIRST_DELAY = Duration.ofMinutes(1);
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(5);
+
+    private final FactRepository facts;
+    private final ScheduledExecutorService timer;
+    private final long intervalMinutes;
+    // failed runs in a row
+    private int failures;
+
+    private SnapshotRefresher(FactRepository facts, ScheduledExecutorService timer, long intervalMinutes) {
+        this.facts = facts;
+        this.timer = timer;
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    /** Schedules refreshes of {@code facts} when its client runs on a local dataset. */
+    static void startIfConfigured(FactRepository facts) {
+        long minutes = Long.getLong("dbpedia.local.refreshMinutes", 360);
+        if (!facts.client().isLocal() || minutes <= 0) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "local-dataset-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        SnapshotRefresher refresher = new SnapshotRefresher(facts, timer, minutes);
+        timer.schedule(refresher::run, Math.min(FIRST_DELAY.toMinutes(), minutes), TimeUnit.MINUTES);
+    }
+
+    private void run() {
+        try {
+            int updated = facts.refresh();
+            if (updated > 0) log.info("Re-read {} countries from the updated local dataset", updated);
+            failures = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            // rescheduled below either way, so one failure does not end the refreshes
+            failures++;
+            log.warn("Local dataset refresh failed ({} in a row), next try in {} min: {}",
+                    failures, nextDelayMinutes(), e.toString());
+        }
+        timer.schedule(this::run, nextDelayMinutes(), TimeUnit.MINUTES);
+    }
+
+    private long nextDelayMinutes() {
+        if (failures == 0) return intervalMinutes;
+        long backoff = RETRY_DELAY.toMinutes() << Math.min(failures - 1, 16);
+        return Math.min(intervalMinutes, backoff);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets the first quiz session ready while the init screen is showing.
+ *
+ * {@link #start()} creates the session and runs its preload on a background thread: the HTTP/2
+ * connection is opened, the first facts are fetched and the refiller starts building questions.
+ * The quiz screen picks that session up with {@link #takeSource()}; its own preload then joins
+ * the one already running, or finds the buffer filled.
+ *
+ * Time to first question (JVM start to the first question on screen) is logged once per run.
+ * With -Dquiz.startup.probe=true the app opens the quiz screen directly and exits right after
+ * that measurement, for scripted runs (see the "startup" Maven profile).
+ */
+public final class StartupWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static QuestionSource warmed;
+    private static final AtomicBoolean firstShown = new AtomicBoolean();
+
+    private StartupWarmup() {}
+
+    /** Starts warming a session in the background; -Dquiz.warmup=false turns it off. */
+    public static synchronized void start() {
+        if (warmed != null || !Boolean.parseBoolean(System.getProperty("quiz.warmup", "true"))) return;
+        QuestionSource source = QuestionSource.forApp();
+        warmed = source;
+        Thread t = new Thread(() -> {
+            long t0 = System.nanoTime();
+            try {
+                source.preload();
+                log.debug("Warm-up preload done in {} ms", (System.nanoTime() - t0) / 1_000_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // the quiz screen preloads again and shows its own error
+                log.warn("Warm-up preload failed: {}", e.toString());
+            }
+        }, "quiz-warmup");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** The warmed session the first time it is asked for, a fresh one afterwards. */
+    public static synchronized QuestionSource takeSource() {
+        QuestionSource s = warmed;
+        warmed = null;
+        return s != null ? s : QuestionSource.forApp();
+    }
+
+    /** Closes a warmed session nobody took. */
+    public static synchronized void discard() {
+        if (warmed != null) warmed.close();
+        warmed = null;
+    }
+
+    public static boolean isProbe() {
+        return Boolean.getBoolean("quiz.startup.probe");
+    }
+
+    /** Call when a question is first rendered; only the first call of the run counts. */
+    public static void firstQuestionShown() {
+        if (!firstShown.compareAndSet(false, true)) return;
+        Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(null);
+        if (jvmStart != null) {
+            long ms = Duration.between(jvmStart, Instant.now()).toMillis();
+            Metrics.record("startup.first_question_ms", ms);
+            log.info("Time to first question: {} ms", ms);
+        }
+        if (isProbe()) Platform.exit();
+    }
+}
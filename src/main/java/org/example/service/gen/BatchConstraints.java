@@ -0,0 +1,64 @@
+package org.example.service.gen;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.example.model.Question;
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * What a {@link CountryQuestionGenerator#generateBatch} call may produce: which question types,
+ * which countries to leave out (e.g. already asked), and whether a flag thumbnail is required.
+ * Fluent setters; not changed while a batch is running.
+ */
+public final class BatchConstraints {
+
+    private final EnumSet<Question.QuestionType> types = EnumSet.allOf(Question.QuestionType.class);
+    private final Set<String> excluded = new HashSet<>();
+    private boolean requireThumbnail;
+
+    public static BatchConstraints any() {
+        return new BatchConstraints();
+    }
+
+    /** Only these question types; at least one. */
+    public BatchConstraints types(Question.QuestionType first, Question.QuestionType... rest) {
+        types.clear();
+        types.add(first);
+        for (Question.QuestionType t : rest) types.add(t);
+        return this;
+    }
+
+    /** Countries (by label, case-insensitive) that must not appear in the batch. */
+    public BatchConstraints exclude(Iterable<String> countries) {
+        for (String c : countries) {
+            if (c != null) excluded.add(key(c));
+        }
+        return this;
+    }
+
+    public BatchConstraints requireThumbnail(boolean require) {
+        this.requireThumbnail = require;
+        return this;
+    }
+
+    public boolean allows(Question.QuestionType type) {
+        return types.contains(type);
+    }
+
+    /** Whether the fact may be the subject of a question: it needs a capital or a population. */
+    boolean accepts(CountryFact fact) {
+        if (isBlank(fact.getCountry())) return false;
+        if (isBlank(fact.getCapital()) && (fact.getPopulation() == null || fact.getPopulation() <= 0)) return false;
+        if (requireThumbnail && isBlank(fact.getThumbnail())) return false;
+        return !excluded.contains(key(fact.getCountry()));
+    }
+
+    static String key(String country) {
+        return country.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
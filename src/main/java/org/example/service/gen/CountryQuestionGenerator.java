@@ -4,62 +4,192 @@ import org.example.model.*;
 import org.example.model.asianCountry.CountryFact;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
 
 public class CountryQuestionGenerator {
+    private static final int WRONG_OPTIONS = 3;
+    // facts per fork/join leaf in generateBatch; one question costs a few microseconds
+    private static final int BATCH_LEAF = 32;
+
+    // first-choice odds per type: capital questions stay the bulk of a quiz
+    private static final Question.QuestionType[] TYPES = {
+            Question.QuestionType.COUNTRY, Question.QuestionType.CAPITAL,
+            Question.QuestionType.LARGEST_POPULATION, Question.QuestionType.MORE_POPULOUS };
+    private static final int[] TYPE_WEIGHTS = { 3, 3, 1, 1 };
+    private static final int TOTAL_WEIGHT = 8;
+
+    // population bands for comparison questions: the other countries differ from the subject by
+    // a factor in [min, max]; below min the answer would be a coin toss for the player
+    private static final double MIN_RATIO = 1.15;
+    private static final double HARD_MAX_RATIO = 2.0;
+    private static final double EASY_MIN_RATIO = 2.0;
+
     private final Random rnd;
+    // pick look-alike distractors (similar population / name) before random ones
+    private final boolean hardDistractors;
+    private final double minRatio;
+    private final double maxRatio;
 
     public CountryQuestionGenerator() {
         this(new Random());
     }
     public CountryQuestionGenerator(Random rnd) {
+        this(rnd, false);
+    }
+    public CountryQuestionGenerator(Random rnd, boolean hardDistractors) {
+        this(rnd, hardDistractors,
+                hardDistractors ? MIN_RATIO : EASY_MIN_RATIO,
+                hardDistractors ? HARD_MAX_RATIO : Double.POSITIVE_INFINITY);
+    }
+    /**
+     * @param minRatio smallest factor between the populations compared (above 1); with
+     *                 {@code maxRatio} sets how hard population questions are
+     * @param maxRatio largest factor, may be infinite; when too few countries fall in the band
+     *                 any country at least MIN_RATIO apart is used
+     */
+    public CountryQuestionGenerator(Random rnd, boolean hardDistractors, double minRatio, double maxRatio) {
+        if (!(minRatio > 1) || !(maxRatio >= minRatio)) {
+            throw new IllegalArgumentException("need 1 < minRatio <= maxRatio");
+        }
         this.rnd = rnd;
+        this.hardDistractors = hardDistractors;
+        this.minRatio = minRatio;
+        this.maxRatio = maxRatio;
     }
 
+    /** Convenience overload that indexes the pools on every call; prefer the DistractorIndex one. */
     public Optional<Question> generate(CountryFact fact, List<CountryFact> allFacts, List<String> captalPool) {
-        List<Question.QuestionType> choices = new ArrayList<>(List.of(
-                Question.QuestionType.COUNTRY,
-                Question.QuestionType.CAPITAL
-        ));
-        Collections.shuffle(choices, rnd);
-
-        for(Question.QuestionType t : choices) {
-            Optional<Question> q = switch (t) {
-                case COUNTRY -> capitalOfCountry(fact, captalPool);
-                case CAPITAL -> countryByCapital(fact, allFacts);
+        return generate(fact, DistractorIndex.build(allFacts, captalPool));
+    }
+
+    public Optional<Question> generate(CountryFact fact, DistractorIndex index) {
+        return generate(fact, index, rnd, null);
+    }
+
+    /**
+     * Up to n questions about n different countries, drawn at random from {@code facts}.
+     * Fewer only when the pool does not have enough usable countries.
+     *
+     * Countries are deduplicated and shuffled up front, then cut into disjoint ranges that
+     * fork/join workers turn into questions, each with its own SplittableRandom split off the
+     * parent's; a country can therefore never be picked twice, with no coordination between
+     * workers. {@code index} is only read and may be shared. For a given generator seed the
+     * result does not depend on the number of threads.
+     */
+    public List<Question> generateBatch(List<CountryFact> facts, DistractorIndex index, int n,
+                                        BatchConstraints constraints) {
+        if (n <= 0) return List.of();
+        List<CountryFact> candidates = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (CountryFact f : facts) {
+            if (constraints.accepts(f) && seen.add(BatchConstraints.key(f.getCountry()))) candidates.add(f);
+        }
+        SplittableRandom root = new SplittableRandom(rnd.nextLong());
+        for (int i = candidates.size() - 1; i > 0; i--) {
+            Collections.swap(candidates, i, root.nextInt(i + 1));
+        }
+
+        List<Question> out = new ArrayList<>(Math.min(n, candidates.size()));
+        int pos = 0;
+        while (out.size() < n && pos < candidates.size()) {
+            // a few spare countries per round cover the ones that cannot get enough distractors
+            int need = n - out.size();
+            int take = Math.min(candidates.size() - pos, need + Math.max(4, need / 8));
+            Question[] built = new Question[take];
+            ForkJoinPool.commonPool().invoke(new BatchTask(candidates, pos, pos + take, built, pos,
+                    index, constraints, root.split()));
+            for (int i = 0; i < take && out.size() < n; i++) {
+                if (built[i] != null) out.add(built[i]);
+            }
+            pos += take;
+        }
+        return out;
+    }
+
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<CountryFact> facts;
+        private final int from, to;
+        private final Question[] out;
+        private final int outBase;
+        private final DistractorIndex index;
+        private final BatchConstraints constraints;
+        private final SplittableRandom rnd;
+
+        BatchTask(List<CountryFact> facts, int from, int to, Question[] out, int outBase,
+                  DistractorIndex index, BatchConstraints constraints, SplittableRandom rnd) {
+            this.facts = facts;
+            this.from = from;
+            this.to = to;
+            this.out = out;
+            this.outBase = outBase;
+            this.index = index;
+            this.constraints = constraints;
+            this.rnd = rnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_LEAF) {
+                for (int i = from; i < to; i++) {
+                    out[i - outBase] = generate(facts.get(i), index, rnd, constraints).orElse(null);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            // split before forking so each half's stream is fixed by position, not by scheduling
+            invokeAll(new BatchTask(facts, from, mid, out, outBase, index, constraints, rnd.split()),
+                    new BatchTask(facts, mid, to, out, outBase, index, constraints, rnd));
+        }
+    }
+
+    /** A type drawn by TYPE_WEIGHTS first, then the others in turn until one can be built. */
+    private Optional<Question> generate(CountryFact fact, DistractorIndex index, RandomGenerator rnd,
+                                        BatchConstraints constraints) {
+        int first = 0;
+        for (int w = rnd.nextInt(TOTAL_WEIGHT); w >= TYPE_WEIGHTS[first]; first++) w -= TYPE_WEIGHTS[first];
+        for (int i = 0; i < TYPES.length; i++) {
+            Question.QuestionType type = TYPES[(first + i) % TYPES.length];
+            if (constraints != null && !constraints.allows(type)) continue;
+            Optional<Question> q = switch (type) {
+                case COUNTRY -> capitalOfCountry(fact, index, rnd);
+                case CAPITAL -> countryByCapital(fact, index, rnd);
+                case LARGEST_POPULATION -> largestPopulation(fact, index, rnd);
+                case MORE_POPULOUS -> morePopulous(fact, index, rnd);
             };
-            if(q.isPresent()) return q;
+            if (q.isPresent()) return q;
         }
         return Optional.empty();
     }
 
     public Optional<Question> capitalOfCountry(CountryFact fact, List<String> capitalPool) {
+        return capitalOfCountry(fact, DistractorIndex.build(List.of(), capitalPool));
+    }
+
+    public Optional<Question> capitalOfCountry(CountryFact fact, DistractorIndex index) {
+        return capitalOfCountry(fact, index, rnd);
+    }
+
+    private Optional<Question> capitalOfCountry(CountryFact fact, DistractorIndex index, RandomGenerator rnd) {
         if(isBlank(fact.getCountry()) || isBlank(fact.getCapital())) {
             return Optional.empty();
         }
         String prompt = "What is the capital city of " + fact.getCountry() +"?";
         String correct = fact.getCapital();
 
-        List<String> wrongs = capitalPool.stream()
-                .filter(s -> !equalsIgnoreCaseTrim(s, correct))
-                .filter(this::notBlank)
-                .distinct()
-                .limit(12)
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        if (wrongs.size() < 3) return Optional.empty();
-        Collections.shuffle(wrongs, rnd);
-        wrongs = wrongs.subList(0, 3);
-
-        List<String> options = new ArrayList<>();
-        options.add(correct);
-        options.addAll(wrongs);
-
+        String[] wrongs = new String[WRONG_OPTIONS];
+        int n = hardDistractors
+                ? index.hardCapitals(fact.getCountry(), correct, WRONG_OPTIONS, rnd, wrongs)
+                : index.sampleCapitals(correct, WRONG_OPTIONS, rnd, wrongs);
+        if (n < WRONG_OPTIONS) return Optional.empty();
 
         Question q = new Question.Builder()
                 .type(Question.QuestionType.COUNTRY)
                 .prompt(prompt)
-                .options(options)
+                .options(List.of(correct, wrongs[0], wrongs[1], wrongs[2]))
                 .correctIndex(0)
                 .explanation(null)
                 .meta("country", fact.getCountry())
@@ -70,46 +200,116 @@ public class CountryQuestionGenerator {
     }
 
     public Optional<Question> countryByCapital(CountryFact fact, List<CountryFact> allFacts) {
+        return countryByCapital(fact, DistractorIndex.build(allFacts, List.of()));
+    }
+
+    public Optional<Question> countryByCapital(CountryFact fact, DistractorIndex index) {
+        return countryByCapital(fact, index, rnd);
+    }
+
+    private Optional<Question> countryByCapital(CountryFact fact, DistractorIndex index, RandomGenerator rnd) {
         if(isBlank(fact.getCountry()) || isBlank(fact.getCapital())) {
             return Optional.empty();
         }
         String prompt = "Which country has capital " + fact.getCapital() +"?";
         String correct = fact.getCountry();
 
-        List<String> wrongs = allFacts.stream()
-                .map(CountryFact::getCountry)
-                .filter(s -> !equalsIgnoreCaseTrim(s, correct))
-                .limit(12)
-                .collect(Collectors.toCollection(ArrayList::new));
+        String[] wrongs = new String[WRONG_OPTIONS];
+        int n = hardDistractors
+                ? index.hardCountries(correct, WRONG_OPTIONS, rnd, wrongs)
+                : index.sampleCountries(correct, WRONG_OPTIONS, rnd, wrongs);
+        if (n < WRONG_OPTIONS) return Optional.empty();
 
-        if (wrongs.size() < 3) return Optional.empty();
-        Collections.shuffle(wrongs, rnd);
-        wrongs = wrongs.subList(0, 3);
+        Question q = new Question.Builder()
+                .type(Question.QuestionType.CAPITAL)
+                .prompt(prompt)
+                .options(List.of(correct, wrongs[0], wrongs[1], wrongs[2]))
+                .correctIndex(0)
+                .explanation(null)
+                .meta("country", fact.getCountry())
+                .meta("capital", fact.getCapital())
+                .meta("thumbnail", fact.getThumbnail())
+                .buildShuffled(rnd);
+        return Optional.of(q);
+    }
 
-        List<String> options = new ArrayList<>();
-        options.add(correct);
-        options.addAll(wrongs);
+    public Optional<Question> largestPopulation(CountryFact fact, DistractorIndex index) {
+        return largestPopulation(fact, index, rnd);
+    }
 
+    /** "Which of these countries has the largest population?": {@code fact} and three smaller ones. */
+    private Optional<Question> largestPopulation(CountryFact fact, DistractorIndex index, RandomGenerator rnd) {
+        int rank = index.populationRank(fact.getCountry());
+        if (rank < 0) return Optional.empty();
+        PopulationIndex pop = index.populations();
+        int[] ranks = new int[WRONG_OPTIONS];
+        int n = pop.draw(rank, true, minRatio, maxRatio, WRONG_OPTIONS, rnd, ranks);
+        if (n < WRONG_OPTIONS) n = pop.draw(rank, true, widest(), Double.POSITIVE_INFINITY, WRONG_OPTIONS, rnd, ranks);
+        if (n < WRONG_OPTIONS) return Optional.empty();
 
+        List<String> options = new ArrayList<>(WRONG_OPTIONS + 1);
+        StringBuilder explain = new StringBuilder(populationOf(pop, rank));
+        options.add(pop.country(rank));
+        for (int r : ranks) {
+            options.add(pop.country(r));
+            explain.append("; ").append(populationOf(pop, r));
+        }
+        // no flag: it would point at the answer
         Question q = new Question.Builder()
-                .type(Question.QuestionType.COUNTRY)
-                .prompt(prompt)
+                .type(Question.QuestionType.LARGEST_POPULATION)
+                .prompt("Which of these countries has the largest population?")
                 .options(options)
                 .correctIndex(0)
                 .explanation(null)
                 .meta("country", fact.getCountry())
-                .meta("capital", fact.getCapital())
-                .meta("thumbnail", fact.getThumbnail())
+                .meta("explain", explain.toString())
                 .buildShuffled(rnd);
         return Optional.of(q);
     }
 
+    public Optional<Question> morePopulous(CountryFact fact, DistractorIndex index) {
+        return morePopulous(fact, index, rnd);
+    }
+
+    /** "Is X more populous than Y?" with Yes/No options; Y is as likely to be smaller as larger. */
+    private Optional<Question> morePopulous(CountryFact fact, DistractorIndex index, RandomGenerator rnd) {
+        int rank = index.populationRank(fact.getCountry());
+        if (rank < 0) return Optional.empty();
+        PopulationIndex pop = index.populations();
+        int[] other = new int[1];
+        boolean smaller = rnd.nextBoolean();
+        int n = 0;
+        // the band on a random side, then the other side, then anything far enough apart
+        for (int attempt = 0; attempt < 4 && n == 0; attempt++) {
+            if (attempt > 0) smaller = !smaller;
+            n = attempt < 2
+                    ? pop.draw(rank, smaller, minRatio, maxRatio, 1, rnd, other)
+                    : pop.draw(rank, smaller, widest(), Double.POSITIVE_INFINITY, 1, rnd, other);
+        }
+        if (n == 0) return Optional.empty();
+
+        Question q = new Question.Builder()
+                .type(Question.QuestionType.MORE_POPULOUS)
+                .prompt("Is " + pop.country(rank) + " more populous than " + pop.country(other[0]) + "?")
+                .options(List.of("Yes", "No"))
+                .correctIndex(smaller ? 0 : 1)
+                .explanation(null)
+                .meta("country", fact.getCountry())
+                .meta("thumbnail", fact.getThumbnail())
+                .meta("explain", populationOf(pop, rank) + "; " + populationOf(pop, other[0]))
+                .build();
+        return Optional.of(q);
+    }
+
+    /** Lower end of the fallback band when the configured one holds too few countries. */
+    private double widest() {
+        return Math.min(minRatio, MIN_RATIO);
+    }
 
-    private static boolean equalsIgnoreCaseTrim(String a, String b) {
-        if (a == null || b == null) return false;
-        return a.trim().equalsIgnoreCase(b.trim());
+    private static String populationOf(PopulationIndex pop, int rank) {
+        return String.format(Locale.ROOT, "%s: %,d", pop.country(rank), pop.population(rank));
     }
-    private boolean notBlank(String s) { return !isBlank(s); }
+
     private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,242 @@
+package org.example.service.gen;
+
+import org.example.model.asianCountry.CountryFact;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Wrong-answer pools for question generation, built once per pool change.
+ *
+ * Country and capital names are deduplicated into arrays so k distractors are drawn in
+ * O(k) expected time straight into the caller's array, uniformly over the whole pool.
+ * For "hard" questions every country also has a short precomputed list of similar countries
+ * (closest population, then closest name length); their names and capitals are used first.
+ * Countries of known population are also ordered by it for comparison questions, see
+ * {@link PopulationIndex}.
+ */
+public final class DistractorIndex {
+
+    // how many similar countries are kept per country, and how far the sorted scan looks
+    private static final int NEIGHBORS = 5;
+    private static final int WINDOW = 8;
+    static final int SLOT_BITS = 21;
+    // largest value that still fits above the slot bits without reaching the sign bit
+    static final long MAX_PACKED = (1L << (63 - SLOT_BITS)) - 1;
+
+    private final String[] countries;
+    private final String[] capitals;
+    private final int[] capitalOfCountry;
+    private final Map<String, Integer> countrySlot;
+    private final int[][] near;
+    private final PopulationIndex populations;
+
+    private DistractorIndex(String[] countries, String[] capitals, int[] capitalOfCountry,
+                            Map<String, Integer> countrySlot, int[][] near, PopulationIndex populations) {
+        this.countries = countries;
+        this.capitals = capitals;
+        this.capitalOfCountry = capitalOfCountry;
+        this.countrySlot = countrySlot;
+        this.near = near;
+        this.populations = populations;
+    }
+
+    public int countryCount() { return countries.length; }
+    public int capitalCount() { return capitals.length; }
+
+    public PopulationIndex populations() { return populations; }
+
+    /** Rank of the country in {@link #populations()}, or -1 when unknown or without a population. */
+    public int populationRank(String country) {
+        if (isBlank(country)) return -1;
+        Integer slot = countrySlot.get(norm(country));
+        return slot == null ? -1 : populations.rankOfSlot(slot);
+    }
+
+    public static DistractorIndex build(List<CountryFact> facts, List<String> capitalPool) {
+        Map<String, Integer> countrySlot = new HashMap<>();
+        Map<String, Integer> capitalSlot = new HashMap<>();
+        String[] countries = new String[facts.size()];
+        String[] capitals = new String[facts.size() + capitalPool.size()];
+        int[] capitalOf = new int[facts.size()];
+        long[] population = new long[facts.size()];
+        int nc = 0;
+        int nk = 0;
+
+        for (String c : capitalPool) {
+            if (isBlank(c)) continue;
+            if (capitalSlot.putIfAbsent(norm(c), nk) == null) capitals[nk++] = c;
+        }
+        for (CountryFact f : facts) {
+            String name = f.getCountry();
+            if (isBlank(name) || countrySlot.putIfAbsent(norm(name), nc) != null) continue;
+            countries[nc] = name;
+            capitalOf[nc] = -1;
+            population[nc] = f.getPopulation() == null ? -1 : f.getPopulation();
+            String cap = f.getCapital();
+            if (!isBlank(cap)) {
+                Integer k = capitalSlot.putIfAbsent(norm(cap), nk);
+                if (k == null) {
+                    capitals[nk] = cap;
+                    k = nk++;
+                }
+                capitalOf[nc] = k;
+            }
+            nc++;
+        }
+
+        countries = Arrays.copyOf(countries, nc);
+        capitals = Arrays.copyOf(capitals, nk);
+        capitalOf = Arrays.copyOf(capitalOf, nc);
+        population = Arrays.copyOf(population, nc);
+        return new DistractorIndex(countries, capitals, capitalOf, countrySlot,
+                neighbors(countries, population), PopulationIndex.build(countries, population));
+    }
+
+    /** Fills out[0..k) with distinct country names other than {@code correct}; returns how many. */
+    public int sampleCountries(String correct, int k, RandomGenerator rnd, String[] out) {
+        return sample(countries, correct, k, rnd, out, 0);
+    }
+
+    /** Fills out[0..k) with distinct capital names other than {@code correct}; returns how many. */
+    public int sampleCapitals(String correct, int k, RandomGenerator rnd, String[] out) {
+        return sample(capitals, correct, k, rnd, out, 0);
+    }
+
+    /** Like {@link #sampleCountries} but countries similar to {@code correct} come first. */
+    public int hardCountries(String correct, int k, RandomGenerator rnd, String[] out) {
+        int filled = 0;
+        Integer slot = countrySlot.get(norm(correct));
+        if (slot != null) {
+            for (int n : near[slot]) {
+                if (filled >= k) break;
+                filled = offer(countries[n], correct, out, filled);
+            }
+        }
+        return sample(countries, correct, k, rnd, out, filled);
+    }
+
+    /** Capitals of countries similar to {@code country} first, then random capitals. */
+    public int hardCapitals(String country, String correct, int k, RandomGenerator rnd, String[] out) {
+        int filled = 0;
+        Integer slot = countrySlot.get(norm(country));
+        if (slot != null) {
+            for (int n : near[slot]) {
+                if (filled >= k) break;
+                int cap = capitalOfCountry[n];
+                if (cap >= 0) filled = offer(capitals[cap], correct, out, filled);
+            }
+        }
+        return sample(capitals, correct, k, rnd, out, filled);
+    }
+
+    /**
+     * Rejection sampling into out[filled..k). Pool entries are unique objects, so a reference
+     * check against what is already in out is enough to keep picks distinct. Falls back to a
+     * linear scan from a random start when the pool is nearly exhausted.
+     */
+    private static int sample(String[] pool, String correct, int k, RandomGenerator rnd, String[] out, int filled) {
+        int n = pool.length;
+        if (n == 0) return filled;
+        int tries = 8 * k + 16;
+        while (filled < k && tries-- > 0) {
+            filled = offer(pool[rnd.nextInt(n)], correct, out, filled);
+        }
+        int start = rnd.nextInt(n);
+        for (int i = 0; i < n && filled < k; i++) {
+            filled = offer(pool[(start + i) % n], correct, out, filled);
+        }
+        return filled;
+    }
+
+    private static int offer(String candidate, String correct, String[] out, int filled) {
+        if (equalsIgnoreCaseTrim(candidate, correct)) return filled;
+        for (int i = 0; i < filled; i++) {
+            if (out[i] == candidate) return filled;
+        }
+        out[filled] = candidate;
+        return filled + 1;
+    }
+
+    /**
+     * For each country, the NEIGHBORS most similar ones among the WINDOW closest on each side
+     * of a sorted order: by population when known (log-ratio distance), otherwise by name length.
+     */
+    private static int[][] neighbors(String[] countries, long[] population) {
+        int n = countries.length;
+        int[][] near = new int[n][];
+
+        int withPop = 0;
+        for (long p : population) if (p > 0) withPop++;
+        long[] byPop = new long[withPop];
+        long[] byLen = new long[n - withPop];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < n; i++) {
+            // a bogus population past MAX_PACKED would overflow and sort out of place
+            if (population[i] > 0) byPop[a++] = (Math.min(population[i], MAX_PACKED) << SLOT_BITS) | i;
+            else byLen[b++] = ((long) countries[i].length() << SLOT_BITS) | i;
+        }
+        Arrays.sort(byPop);
+        Arrays.sort(byLen);
+
+        fillNeighbors(byPop, countries, population, near);
+        fillNeighbors(byLen, countries, population, near);
+        return near;
+    }
+
+    private static void fillNeighbors(long[] sorted, String[] countries, long[] population, int[][] near) {
+        long mask = (1L << SLOT_BITS) - 1;
+        int[] best = new int[NEIGHBORS];
+        double[] bestScore = new double[NEIGHBORS];
+        for (int i = 0; i < sorted.length; i++) {
+            int self = (int) (sorted[i] & mask);
+            int found = 0;
+            int from = Math.max(0, i - WINDOW);
+            int to = Math.min(sorted.length - 1, i + WINDOW);
+            for (int j = from; j <= to; j++) {
+                if (j == i) continue;
+                int other = (int) (sorted[j] & mask);
+                double score = similarity(self, other, countries, population);
+                // insertion into a small sorted top-N
+                int pos = found < NEIGHBORS ? found++ : NEIGHBORS;
+                while (pos > 0 && bestScore[pos - 1] > score) {
+                    if (pos < NEIGHBORS) {
+                        best[pos] = best[pos - 1];
+                        bestScore[pos] = bestScore[pos - 1];
+                    }
+                    pos--;
+                }
+                if (pos < NEIGHBORS) {
+                    best[pos] = other;
+                    bestScore[pos] = score;
+                }
+            }
+            near[self] = Arrays.copyOf(best, found);
+        }
+    }
+
+    /** Lower is more similar. */
+    private static double similarity(int x, int y, String[] countries, long[] population) {
+        double lenDiff = Math.abs(countries[x].length() - countries[y].length());
+        if (population[x] > 0 && population[y] > 0) {
+            return Math.abs(Math.log((double) population[x] / population[y])) + 0.05 * lenDiff;
+        }
+        return lenDiff;
+    }
+
+    private static String norm(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean equalsIgnoreCaseTrim(String a, String b) {
+        if (a == null || b == null) return false;
+        return a.trim().equalsIgnoreCase(b.trim());
+    }
+
+    private static boolean isBlank(String s) { return s == null || s.trim().isEmpty(); }
+}
@@ -0,0 +1,133 @@
+package org.example.service.gen;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Countries of known population in ascending order, for "which is larger" questions.
+ *
+ * Populations sit in a sorted {@code long[]} with the country slots (indexes into the
+ * DistractorIndex name array) in a parallel {@code int[]}, so everything here works on ranks
+ * (positions in that order) and primitives. The countries whose population lies within a ratio
+ * band of a given one are a contiguous rank range found by two binary searches; k of them are
+ * then drawn in O(k^2) for a small k. A band whose lower ratio is above 1 keeps every drawn
+ * country strictly smaller (or larger) than the subject, so the answer is unique; the band
+ * itself is the difficulty: close to 1 is hard, 2 and above is easy.
+ */
+public final class PopulationIndex {
+
+    private final long[] populations;
+    private final int[] slots;
+    private final int[] rankOfSlot;
+    private final String[] names;
+
+    private PopulationIndex(long[] populations, int[] slots, int[] rankOfSlot, String[] names) {
+        this.populations = populations;
+        this.slots = slots;
+        this.rankOfSlot = rankOfSlot;
+        this.names = names;
+    }
+
+    /**
+     * {@code population[slot]} is the population of {@code names[slot]}, or not above 0 when
+     * unknown. Values too large to pack (over 4 trillion, so bogus) count as unknown as well:
+     * clamping them would tie them and break the ordering the bands rely on.
+     */
+    static PopulationIndex build(String[] names, long[] population) {
+        int n = 0;
+        for (long p : population) if (usable(p)) n++;
+        // population in the high bits, slot in the low ones: one primitive sort orders both
+        long[] packed = new long[n];
+        int k = 0;
+        for (int slot = 0; slot < population.length; slot++) {
+            if (usable(population[slot])) packed[k++] = (population[slot] << DistractorIndex.SLOT_BITS) | slot;
+        }
+        Arrays.sort(packed);
+
+        long mask = (1L << DistractorIndex.SLOT_BITS) - 1;
+        long[] populations = new long[n];
+        int[] slots = new int[n];
+        int[] rankOfSlot = new int[population.length];
+        Arrays.fill(rankOfSlot, -1);
+        for (int r = 0; r < n; r++) {
+            slots[r] = (int) (packed[r] & mask);
+            populations[r] = population[slots[r]];
+            rankOfSlot[slots[r]] = r;
+        }
+        return new PopulationIndex(populations, slots, rankOfSlot, names);
+    }
+
+    private static boolean usable(long population) {
+        return population > 0 && population <= DistractorIndex.MAX_PACKED;
+    }
+
+    public int size() { return populations.length; }
+
+    /** Rank of the country in slot {@code slot}, or -1 when its population is unknown. */
+    int rankOfSlot(int slot) {
+        return slot >= 0 && slot < rankOfSlot.length ? rankOfSlot[slot] : -1;
+    }
+
+    public long population(int rank) { return populations[rank]; }
+
+    public String country(int rank) { return names[slots[rank]]; }
+
+    /**
+     * Fills out[0..k) with distinct ranks of countries whose population is between
+     * {@code minRatio} and {@code maxRatio} times smaller ({@code smaller}) or larger than that
+     * of {@code rank}; returns how many, fewer when the band does not hold k countries.
+     * {@code maxRatio} may be infinite; {@code minRatio} should be above 1.
+     */
+    public int draw(int rank, boolean smaller, double minRatio, double maxRatio, int k,
+                    RandomGenerator rnd, int[] out) {
+        double p = populations[rank];
+        long lo;
+        long hi;
+        if (smaller) {
+            lo = maxRatio == Double.POSITIVE_INFINITY ? 0 : (long) Math.ceil(p / maxRatio);
+            hi = (long) Math.floor(p / minRatio);
+        } else {
+            lo = (long) Math.ceil(p * minRatio);
+            double top = Math.floor(p * maxRatio);
+            hi = top >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) top;
+        }
+        int from = firstAtLeast(lo);
+        int to = firstAbove(hi);
+        int n = to - from;
+        if (n <= 0) return 0;
+        if (n <= k) {
+            for (int i = 0; i < n; i++) out[i] = from + i;
+            return n;
+        }
+        // Floyd's sampling: k distinct picks from [from, to) in k draws
+        int filled = 0;
+        for (int j = n - k; j < n; j++) {
+            int pick = from + rnd.nextInt(j + 1);
+            for (int i = 0; i < filled; i++) {
+                if (out[i] == pick) {
+                    pick = from + j;
+                    break;
+                }
+            }
+            out[filled++] = pick;
+        }
+        return filled;
+    }
+
+    /** First rank whose population is at least {@code value}; size() when none. */
+    private int firstAtLeast(long value) {
+        int lo = 0;
+        int hi = populations.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (populations[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** First rank whose population is above {@code value}; size() when none. */
+    private int firstAbove(long value) {
+        return value == Long.MAX_VALUE ? populations.length : firstAtLeast(value + 1);
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.service.pack;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import org.example.model.Question;
+import org.example.service.QuestionSource;
+
+/**
+ * Serves the questions of a {@link QuizPack} in a random order, each at most once.
+ *
+ * The order is start + k * step (mod size) with step coprime to size: it visits every question
+ * exactly once and needs no per-pack shuffle array, so a session starts in the same time for a
+ * pack of fifty questions or of a million. Nothing is fetched, so nothing ever waits.
+ */
+public class PackQuestionSource implements QuestionSource {
+
+    private final QuizPack pack;
+    private final int start;
+    private final int step;
+    private int served;
+
+    public PackQuestionSource(QuizPack pack, SplittableRandom rnd) {
+        this.pack = pack;
+        int n = pack.size();
+        this.start = n == 0 ? 0 : rnd.nextInt(n);
+        int s = 1;
+        if (n > 2) {
+            do {
+                s = 1 + rnd.nextInt(n - 1);
+            } while (gcd(s, n) != 1);
+        }
+        this.step = s;
+    }
+
+    /** A source over the process-wide mapping of {@code file} (see {@link QuizPack#shared}). */
+    public static PackQuestionSource open(Path file) throws IOException {
+        return new PackQuestionSource(QuizPack.shared(file), new SplittableRandom());
+    }
+
+    public QuizPack pack() {
+        return pack;
+    }
+
+    @Override
+    public void preload() {
+        // mapped on open; nothing to load
+    }
+
+    @Override
+    public synchronized Optional<Question> pollNextQuestion() {
+        if (served >= pack.size()) return Optional.empty();
+        return Optional.of(pack.question(slot(served++)));
+    }
+
+    @Override
+    public Optional<Question> getNextQuestion() {
+        return pollNextQuestion();
+    }
+
+    @Override
+    public Optional<Question> getNextQuestion(Duration timeout) {
+        return pollNextQuestion();
+    }
+
+    @Override
+    public synchronized List<Question> peekUpcoming(int n) {
+        int count = Math.max(0, Math.min(n, pack.size() - served));
+        List<Question> out = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) out.add(pack.question(slot(served + k)));
+        return out;
+    }
+
+    /**
+     * Does nothing: the mapping is shared with every other session on the same pack, and Java
+     * has no way to unmap it early anyway. It stays for the next session.
+     */
+    @Override
+    public void close() {
+    }
+
+    private int slot(int k) {
+        return (int) ((start + (long) k * step) % pack.size());
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.service.pack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.example.model.Question;
+
+/**
+ * Read-only view of a quiz pack file, memory-mapped.
+ *
+ * Layout (version 1, big-endian):
+ * <pre>
+ *   header   magic "QZPK", u16 version, u16 record size, i32 questions, i32 strings,
+ *            i64 offset of records, i64 offset of string offsets, i64 offset of string data
+ *   records  one fixed-width record per question:
+ *            u8 type, u8 correct index, u8 option count, u8 reserved,
+ *            i32 id, i32 prompt, i32 option[MAX_OPTIONS], i32 country, i32 capital,
+ *            i32 thumbnail, i32 explain   (string ids, NO_STRING for none)
+ *   strings  i32 offsets[strings + 1] into the data block, then UTF-8 data
+ * </pre>
+ *
+ * Opening only checks the header, so it costs the same for any pack size; a question is decoded
+ * when asked for. Safe to read from several threads. The mapping lives until the pack is
+ * garbage collected; {@link #shared} keeps one per file for the whole process.
+ */
+public final class QuizPack {
+
+    static final int MAGIC = 0x515A504B; // "QZPK"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int MAX_OPTIONS = 4;
+    static final int RECORD_SIZE = 4 + 4 * (2 + MAX_OPTIONS + 4);
+    static final int NO_STRING = -1;
+
+    private static final Question.QuestionType[] TYPES = Question.QuestionType.values();
+
+    // packs mapped by shared(), by absolute path
+    private static final Map<Path, Shared> SHARED = new HashMap<>();
+
+    private static final class Shared {
+        final QuizPack pack;
+        final FileTime modified;
+        final long size;
+        Shared(QuizPack pack, FileTime modified, long size) { this.pack = pack; this.modified = modified; this.size = size; }
+    }
+
+    private final Path file;
+    private final ByteBuffer buf;
+    private final int questions;
+    private final int strings;
+    private final int records;
+    private final int stringOffsets;
+    private final int stringData;
+
+    private QuizPack(Path file, ByteBuffer buf) throws IOException {
+        this.file = file;
+        this.buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a quiz pack");
+        }
+        int version = buf.getShort(4);
+        if (version != VERSION) throw new IOException(file + ": unsupported pack version " + version);
+        if (buf.getShort(6) != RECORD_SIZE) throw new IOException(file + ": unexpected record size");
+        questions = buf.getInt(8);
+        strings = buf.getInt(12);
+        records = offset(buf.getLong(16));
+        stringOffsets = offset(buf.getLong(24));
+        stringData = offset(buf.getLong(32));
+        if (questions < 0 || strings < 0
+                || (long) records + (long) questions * RECORD_SIZE > stringOffsets
+                || (long) stringOffsets + 4L * (strings + 1) > stringData
+                || stringData + (long) buf.getInt(stringOffsets + 4 * strings) > buf.capacity()) {
+            throw new IOException(file + ": truncated or corrupt pack");
+        }
+    }
+
+    public static QuizPack open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException(file + ": packs are limited to 2 GB");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new QuizPack(file, map);
+        }
+    }
+
+    /**
+     * The pack in {@code file}, mapped once and handed to every caller, so sessions share one
+     * mapping instead of each mapping the file again. A file replaced since (QuizPackWriter
+     * moves new packs into place) is mapped anew; the old mapping stays valid for whoever
+     * still reads it.
+     */
+    public static synchronized QuizPack shared(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        FileTime modified = Files.getLastModifiedTime(key);
+        long size = Files.size(key);
+        Shared s = SHARED.get(key);
+        if (s == null || !s.modified.equals(modified) || s.size != size) {
+            s = new Shared(open(key), modified, size);
+            SHARED.put(key, s);
+        }
+        return s.pack;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public int size() {
+        return questions;
+    }
+
+    /** Decodes question i (0..size-1). */
+    public Question question(int i) {
+        if (i < 0 || i >= questions) throw new IndexOutOfBoundsException(i + " of " + questions);
+        int at = records + i * RECORD_SIZE;
+        int type = buf.get(at) & 0xFF;
+        int correct = buf.get(at + 1) & 0xFF;
+        int count = buf.get(at + 2) & 0xFF;
+        at += 4;
+        String id = string(buf.getInt(at));
+        String prompt = string(buf.getInt(at + 4));
+        at += 8;
+        String[] options = new String[count];
+        for (int k = 0; k < count; k++) options[k] = string(buf.getInt(at + 4 * k));
+        at += 4 * MAX_OPTIONS;
+
+        Map<String, String> meta = new HashMap<>(4);
+        putIfPresent(meta, "country", string(buf.getInt(at)));
+        putIfPresent(meta, "capital", string(buf.getInt(at + 4)));
+        putIfPresent(meta, "thumbnail", string(buf.getInt(at + 8)));
+        putIfPresent(meta, "explain", string(buf.getInt(at + 12)));
+        return new Question(id, type < TYPES.length ? TYPES[type] : null, prompt, List.of(options), correct,
+                meta.get("explain"), meta);
+    }
+
+    private String string(int id) {
+        if (id == NO_STRING) return null;
+        if (id < 0 || id >= strings) throw new IllegalStateException(file + ": bad string id " + id);
+        int from = buf.getInt(stringOffsets + 4 * id);
+        int to = buf.getInt(stringOffsets + 4 * id + 4);
+        byte[] bytes = new byte[to - from];
+        buf.get(stringData + from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putIfPresent(Map<String, String> meta, String key, String value) {
+        if (value != null) meta.put(key, value);
+    }
+
+    private static int offset(long v) throws IOException {
+        if (v < HEADER_SIZE || v > Integer.MAX_VALUE) throw new IOException("bad section offset " + v);
+        return (int) v;
+    }
+}
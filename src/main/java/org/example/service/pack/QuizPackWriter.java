@@ -0,0 +1,146 @@
+package org.example.service.pack;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.example.model.Question;
+import org.example.model.asianCountry.CountryFact;
+import org.example.service.FactRepository;
+import org.example.service.gen.BatchConstraints;
+import org.example.service.gen.CountryQuestionGenerator;
+import org.example.service.gen.DistractorIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes questions into a {@link QuizPack} file. Strings are stored once however many questions
+ * use them (capitals and country names repeat a lot). The file is written next to the target and
+ * moved into place, so readers never see half a pack.
+ *
+ * Exporter: java -cp <app classpath> org.example.service.pack.QuizPackWriter out.qpk [questions]
+ */
+public final class QuizPackWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizPackWriter.class);
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<byte[]> stringBytes = new ArrayList<>();
+    private long stringDataSize;
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(records);
+    private int questions;
+
+    public static void write(Path file, Iterable<Question> questions) throws IOException {
+        QuizPackWriter w = new QuizPackWriter();
+        for (Question q : questions) w.add(q);
+        w.writeTo(file);
+    }
+
+    public void add(Question q) throws IOException {
+        List<String> options = q.getOptions();
+        if (options.size() > QuizPack.MAX_OPTIONS) {
+            throw new IllegalArgumentException("packs hold at most " + QuizPack.MAX_OPTIONS + " options");
+        }
+        Map<String, String> meta = q.getMeta();
+        String explain = meta.getOrDefault("explain", q.getExplanation());
+
+        recordOut.writeByte(q.getType() == null ? 0xFF : q.getType().ordinal());
+        recordOut.writeByte(q.getCorrectIndex());
+        recordOut.writeByte(options.size());
+        recordOut.writeByte(0);
+        recordOut.writeInt(intern(q.getId()));
+        recordOut.writeInt(intern(q.getPrompt()));
+        for (int k = 0; k < QuizPack.MAX_OPTIONS; k++) {
+            recordOut.writeInt(k < options.size() ? intern(options.get(k)) : QuizPack.NO_STRING);
+        }
+        recordOut.writeInt(intern(meta.get("country")));
+        recordOut.writeInt(intern(meta.get("capital")));
+        recordOut.writeInt(intern(meta.get("thumbnail")));
+        recordOut.writeInt(intern(explain));
+        questions++;
+    }
+
+    public void writeTo(Path file) throws IOException {
+        long recordsAt = QuizPack.HEADER_SIZE;
+        long offsetsAt = recordsAt + (long) questions * QuizPack.RECORD_SIZE;
+        long dataAt = offsetsAt + 4L * (stringBytes.size() + 1);
+        if (dataAt + stringDataSize > Integer.MAX_VALUE) throw new IOException("pack would exceed 2 GB");
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "pack", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(QuizPack.MAGIC);
+                out.writeShort(QuizPack.VERSION);
+                out.writeShort(QuizPack.RECORD_SIZE);
+                out.writeInt(questions);
+                out.writeInt(stringBytes.size());
+                out.writeLong(recordsAt);
+                out.writeLong(offsetsAt);
+                out.writeLong(dataAt);
+                records.writeTo(out);
+                int off = 0;
+                for (byte[] b : stringBytes) {
+                    out.writeInt(off);
+                    off += b.length;
+                }
+                out.writeInt(off);
+                for (byte[] b : stringBytes) out.write(b);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private int intern(String s) {
+        if (s == null) return QuizPack.NO_STRING;
+        Integer id = stringIds.get(s);
+        if (id != null) return id;
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        stringBytes.add(b);
+        stringDataSize += b.length;
+        stringIds.put(s, stringBytes.size() - 1);
+        return stringBytes.size() - 1;
+    }
+
+    /** Fetches all the facts it can, then writes {@code questions} generated questions to a pack. */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: QuizPackWriter <out.qpk> [questions]");
+            System.exit(2);
+        }
+        Path out = Path.of(args[0]);
+        int wanted = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+        FactRepository facts = FactRepository.shared();
+        while (!facts.isExhausted()) facts.fetchBeyond(facts.size());
+        List<CountryFact> pool = facts.snapshot();
+        DistractorIndex index = facts.distractors();
+        log.info("Generating {} questions from {} facts", wanted, pool.size());
+
+        // each round asks about every country once; rounds differ in question type and distractors
+        CountryQuestionGenerator generator = new CountryQuestionGenerator(new Random());
+        QuizPackWriter w = new QuizPackWriter();
+        while (w.questions < wanted) {
+            List<Question> round = generator.generateBatch(pool, index, wanted - w.questions, BatchConstraints.any());
+            if (round.isEmpty()) break;
+            for (Question q : round) w.add(q);
+        }
+        w.writeTo(out);
+        log.info("Wrote {} questions, {} strings to {} ({} bytes)", w.questions, w.stringBytes.size(), out,
+                Files.size(out));
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.example.model.StubSparqlEndpoint.Faults;
+import org.example.model.asianCountry.CountryFact;
+import org.junit.jupiter.api.Test;
+
+/** DbpediaClient against a {@link StubSparqlEndpoint}: paging, retries and injected faults. */
+class DbpediaClientTest {
+
+    private static final List<CountryFact> POOL = Fixtures.facts(48);
+
+    @Test
+    void samplesDistinctRowsFromOnePage() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none())) {
+            List<CountryFact> facts = client(stub, 2).getRandomAsianCountryFacts(12);
+
+            assertEquals(12, uris(facts).size());
+            assertTrue(uris(POOL).containsAll(uris(facts)));
+            // the row count, then one of the two pages of twice the rows asked for
+            assertEquals(2, stub.requestCount());
+        }
+    }
+
+    @Test
+    void shortLastPageIsToppedUpFromTheNext() throws Exception {
+        // 25 rows in pages of 20: a start on the second page finds 5 rows and wraps around
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(Fixtures.facts(25), Faults.none())) {
+            DbpediaClient client = client(stub, 2);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(10, uris(client.getRandomAsianCountryFacts(10)).size());
+            }
+        }
+    }
+
+    @Test
+    void askingForMoreThanThereIsReturnsEverything() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none())) {
+            List<CountryFact> facts = client(stub, 2).getRandomAsianCountryFactsAsync(100).get();
+
+            assertEquals(uris(POOL), uris(facts));
+            assertEquals(2, stub.requestCount());
+        }
+    }
+
+    @Test
+    void retriesServerErrorsUntilAnAnswer() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(2, 503))) {
+            List<CountryFact> facts = client(stub, 2).getAsianCountryFacts(List.of(POOL.get(0).getCountryUri()));
+
+            assertEquals(1, facts.size());
+            assertEquals(POOL.get(0).getCountry(), facts.get(0).getCountry());
+            assertEquals(3, stub.requestCount());
+            assertEquals(2, stub.serverErrors.get());
+        }
+    }
+
+    @Test
+    void retriesAsyncRequestsToo() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(1, 500))) {
+            List<String> capitals = client(stub, 2).getAsianCapitalNameAsync(5).get();
+
+            assertEquals(5, capitals.size());
+            // one failed count query, then it and one or two pages
+            assertEquals(1, stub.serverErrors.get());
+            assertEquals(stub.requestCount() - 1, stub.ok.get());
+        }
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(10, 500))) {
+            IOException e = assertThrows(IOException.class,
+                    () -> client(stub, 1).getAsianCountryFacts(List.of(POOL.get(0).getCountryUri())));
+
+            assertTrue(e.getMessage().contains("HTTP 500"), e.getMessage());
+            assertEquals(2, stub.requestCount());
+        }
+    }
+
+    @Test
+    void doesNotRetryClientErrors() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(10, 404))) {
+            IOException e = assertThrows(IOException.class,
+                    () -> client(stub, 2).getAsianCountryFacts(List.of(POOL.get(0).getCountryUri())));
+
+            assertTrue(e.getMessage().contains("HTTP 404"), e.getMessage());
+            assertEquals(1, stub.requestCount());
+        }
+    }
+
+    @Test
+    void bodyCutOffMidwayFailsTheRequest() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().resets(1))) {
+            assertThrows(IOException.class,
+                    () -> client(stub, 1).getAsianCountryFacts(List.of(POOL.get(0).getCountryUri())));
+
+            assertEquals(2, stub.resets.get());
+        }
+    }
+
+    @Test
+    void slowBodiesStillParse() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().slowBodies(1, 1))) {
+            List<CountryFact> facts = client(stub, 0).getRandomAsianCountryFacts(48);
+
+            assertEquals(uris(POOL), uris(facts));
+            assertEquals(2, stub.slowBodies.get());
+        }
+    }
+
+    private static DbpediaClient client(StubSparqlEndpoint stub, int maxRetries) {
+        return new DbpediaClient(stub.url(), Duration.ofSeconds(5), maxRetries);
+    }
+
+    private static Set<String> uris(List<CountryFact> facts) {
+        Set<String> out = new HashSet<>();
+        for (CountryFact f : facts) out.add(f.getCountryUri());
+        return out;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import org.example.model.StubSparqlEndpoint.Faults;
+import org.example.model.asianCountry.CountryFact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** DbpediaClient over two stub endpoints: failover, hedged requests and the circuit breaker. */
+class EndpointFailoverTest {
+
+    private static final List<CountryFact> POOL = Fixtures.facts(48);
+    private static final List<String> ONE_COUNTRY = List.of(POOL.get(0).getCountryUri());
+
+    private StubSparqlEndpoint a;
+    private StubSparqlEndpoint b;
+
+    @AfterEach
+    void stop() {
+        if (a != null) a.close();
+        if (b != null) b.close();
+    }
+
+    @Test
+    void failedAttemptIsRetriedOnTheOtherEndpoint() throws Exception {
+        a = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(Long.MAX_VALUE, 503));
+        b = StubSparqlEndpoint.start(POOL, Faults.none());
+
+        assertEquals(1, client(1).getAsianCountryFacts(ONE_COUNTRY).size());
+        assertEquals(1, a.requestCount());
+        assertEquals(1, b.requestCount());
+    }
+
+    @Test
+    void slowRequestIsHedgedToTheOtherEndpoint() throws Exception {
+        a = StubSparqlEndpoint.start(POOL, Faults.none().latency(3000, 0));
+        b = StubSparqlEndpoint.start(POOL, Faults.none());
+
+        // no timings yet: the hedge goes out after a quarter of the 2 s timeout
+        long t0 = System.nanoTime();
+        assertEquals(1, client(0).getAsianCountryFacts(ONE_COUNTRY).size());
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+
+        assertTrue(ms >= 400 && ms < 2000, ms + " ms");
+        assertEquals(1, a.requestCount());
+        assertEquals(1, b.requestCount());
+    }
+
+    @Test
+    void failingEndpointIsPassedOverAfterwards() throws Exception {
+        a = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(Long.MAX_VALUE, 500));
+        b = StubSparqlEndpoint.start(POOL, Faults.none());
+        DbpediaClient client = client(1);
+
+        for (int i = 0; i < 2 * EndpointPool.FAILURES_TO_OPEN; i++) {
+            assertEquals(1, client.getAsianCountryFacts(ONE_COUNTRY).size());
+        }
+        assertEquals(1, a.requestCount());
+        assertEquals(2 * EndpointPool.FAILURES_TO_OPEN, b.requestCount());
+    }
+
+    @Test
+    void everyBreakerOpenFailsWithoutSending() throws Exception {
+        a = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(Long.MAX_VALUE, 500));
+        DbpediaClient client = new DbpediaClient(a.url(), Duration.ofSeconds(2), 0);
+
+        for (int i = 0; i < EndpointPool.FAILURES_TO_OPEN; i++) {
+            assertThrows(IOException.class, () -> client.getAsianCountryFacts(ONE_COUNTRY));
+        }
+        IOException e = assertThrows(IOException.class, () -> client.getAsianCountryFacts(ONE_COUNTRY));
+        assertTrue(e.getMessage().contains("circuit open"), e.getMessage());
+        assertEquals(EndpointPool.FAILURES_TO_OPEN, a.requestCount());
+    }
+
+    private DbpediaClient client(int maxRetries) {
+        return new DbpediaClient(List.of(a.url(), b.url()), Duration.ofSeconds(2), maxRetries, null);
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class EndpointPoolTest {
+
+    private static final long MS = 1_000_000;
+
+    private final EndpointPool pool = new EndpointPool(List.of("http://a/sparql", "http://b/sparql"), Duration.ofSeconds(1));
+
+    @Test
+    void prefersTheFirstUntilLatenciesAreKnown() {
+        assertEquals("http://a/sparql", pool.acquire(null).url);
+        assertEquals("http://b/sparql", pool.acquire(pool.acquire(null)).url);
+    }
+
+    @Test
+    void prefersTheFasterEndpoint() {
+        EndpointPool.Endpoint a = pool.acquire(null);
+        EndpointPool.Endpoint b = pool.acquire(a);
+        pool.success(a, 200 * MS);
+        pool.success(b, 20 * MS);
+
+        assertSame(b, pool.acquire(null));
+    }
+
+    @Test
+    void breakerOpensAfterFailuresInARow() {
+        EndpointPool.Endpoint a = pool.acquire(null);
+        EndpointPool.Endpoint b = pool.acquire(a);
+        pool.success(a, 10 * MS);
+        pool.success(b, 500 * MS);
+        for (int i = 0; i < EndpointPool.FAILURES_TO_OPEN - 1; i++) pool.failure(a);
+        // still closed, and cheaper than b despite the failures
+        assertSame(a, pool.acquire(null));
+
+        pool.failure(a);
+        assertSame(b, pool.acquire(null));
+        assertNull(pool.acquire(b));
+    }
+
+    @Test
+    void endpointThatOnlyFailedGoesAfterAnUntriedOne() {
+        EndpointPool.Endpoint a = pool.acquire(null);
+        pool.failure(a);
+
+        assertEquals("http://b/sparql", pool.acquire(null).url);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        EndpointPool.Endpoint a = pool.acquire(null);
+        for (int i = 0; i < EndpointPool.FAILURES_TO_OPEN - 1; i++) pool.failure(a);
+        pool.success(a, 10 * MS);
+        for (int i = 0; i < EndpointPool.FAILURES_TO_OPEN - 1; i++) pool.failure(a);
+
+        assertSame(a, pool.acquire(pool.acquire(a)));
+    }
+
+    @Test
+    void probeAfterCoolDownClosesOrReopensTheBreaker() throws InterruptedException {
+        EndpointPool.Endpoint a = pool.acquire(null);
+        EndpointPool.Endpoint b = pool.acquire(a);
+        EndpointPool single = new EndpointPool(List.of("http://c/sparql"), Duration.ofSeconds(1));
+        EndpointPool.Endpoint c = single.acquire(null);
+        for (int i = 0; i < EndpointPool.FAILURES_TO_OPEN; i++) {
+            pool.failure(a);
+            single.failure(c);
+        }
+        assertNull(single.acquire(null));
+        Thread.sleep(5_100);
+
+        // cool-down over: a is the probe, and nobody else gets it meanwhile; its failure reopens
+        assertSame(a, pool.acquire(b));
+        assertNull(pool.acquire(b));
+        pool.failure(a);
+        assertNull(pool.acquire(b));
+
+        assertSame(c, single.acquire(null));
+        assertNull(single.acquire(null));
+        // a probe that was never sent gives its slot back
+        single.notSent(c);
+        assertSame(c, single.acquire(null));
+        single.success(c, 10 * MS);
+        assertSame(c, single.acquire(null));
+        assertSame(c, single.acquire(null));
+    }
+
+    @Test
+    void requestsNeverSentDoNotCount() {
+        EndpointPool single = new EndpointPool(List.of("http://c/sparql"), Duration.ofSeconds(1));
+        EndpointPool.Endpoint c = single.acquire(null);
+        for (int i = 0; i < 3 * EndpointPool.FAILURES_TO_OPEN; i++) single.notSent(c);
+
+        assertSame(c, single.acquire(null));
+    }
+
+    @Test
+    void hedgeDelayIsTheRecentP95() {
+        assertEquals(1000 * MS, pool.hedgeDelayNanos());
+        EndpointPool.Endpoint a = pool.acquire(null);
+        for (int i = 1; i <= 32; i++) pool.success(a, (i <= 30 ? 50 : 900) * MS);
+
+        assertEquals(900 * MS, pool.hedgeDelayNanos());
+        for (int i = 0; i < 96; i++) pool.success(a, 50 * MS);
+        assertEquals(50 * MS, pool.hedgeDelayNanos());
+    }
+}
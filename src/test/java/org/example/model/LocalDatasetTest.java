@@ -0,0 +1,173 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.example.model.StubSparqlEndpoint.Faults;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Incremental refresh of the local copy: the revision marker diff and what it pulls. */
+class LocalDatasetTest {
+
+    private static final String R = "http://dbpedia.org/resource/";
+    private static final String A = R + "Aland", B = R + "Bland", C = R + "Cland", D = R + "Dland";
+
+    private static final String PREFIXES = """
+            @prefix dbo: <http://dbpedia.org/ontology/> .
+            @prefix dct: <http://purl.org/dc/terms/> .
+            @prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .
+            @prefix dbr: <http://dbpedia.org/resource/> .
+            @prefix dbc: <http://dbpedia.org/resource/Category:> .
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pullsOnlyCountriesThatAreNewOrHaveAnotherRevision() throws Exception {
+        LocalDataset local = dataset(country("Aland", "A old", "Acity", 1) + country("Bland", "B", null, 5)
+                + country("Dland", "D", null, 3));
+        LocalDataset remote = dataset(country("Aland", "A new", "Anewcity", 2) + country("Bland", "B", null, 5)
+                + country("Cland", "C", "Ccity", 1));
+        List<String> sent = new ArrayList<>();
+
+        LocalDataset.Refresh r = local.refreshFrom((sparql, format) -> {
+            sent.add(sparql);
+            return remote.select(sparql, format);
+        });
+
+        assertEquals(Set.of(A, C), Set.copyOf(r.updated));
+        assertEquals(List.of(D), r.removed);
+        assertEquals(1, r.unchanged);
+        // the marker query, then one query for the two that changed
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(1).contains("<" + A + ">") && sent.get(1).contains("<" + C + ">"), sent.get(1));
+        assertFalse(sent.get(1).contains("<" + B + ">"), sent.get(1));
+
+        assertEquals("\"A new\"@en", label(local, A));
+        assertEquals("\"C\"@en", label(local, C));
+        assertEquals("\"B\"@en", label(local, B));
+        assertEquals("", label(local, D));
+        assertEquals(objects(remote, A), objects(local, A));
+        assertEquals(objects(remote, C), objects(local, C));
+    }
+
+    @Test
+    void secondRefreshOnlyComparesMarkers() throws Exception {
+        LocalDataset local = dataset(country("Aland", "A", null, 1));
+        LocalDataset remote = dataset(country("Aland", "A", null, 2) + country("Bland", "B", null, 1));
+        List<String> sent = new ArrayList<>();
+        LocalDataset.Upstream upstream = (sparql, format) -> {
+            sent.add(sparql);
+            return remote.select(sparql, format);
+        };
+        local.refreshFrom(upstream);
+        sent.clear();
+
+        LocalDataset.Refresh r = local.refreshFrom(upstream);
+
+        assertTrue(r.isEmpty());
+        assertEquals(2, r.unchanged);
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void failedFetchLeavesTheCopyAsItWas() throws Exception {
+        LocalDataset local = dataset(country("Aland", "A old", null, 1) + country("Dland", "D", null, 3));
+        LocalDataset remote = dataset(country("Aland", "A new", null, 2));
+        long size = local.size();
+
+        assertThrows(IOException.class, () -> local.refreshFrom((sparql, format) -> {
+            if (sparql.equals(LocalDataset.MARKER_QUERY)) return remote.select(sparql, format);
+            throw new IOException("endpoint went away");
+        }));
+
+        assertEquals(size, local.size());
+        assertEquals("\"A old\"@en", label(local, A));
+        assertEquals("\"D\"@en", label(local, D));
+    }
+
+    @Test
+    void markersThatAreNotIrisAreSkipped() throws Exception {
+        LocalDataset local = dataset(country("Aland", "A", null, 1));
+        LocalDataset remote = dataset(country("Aland", "A", null, 2));
+        String bad = "<http://x/y> } } INSERT DATA { <http://x/z> <http://x/p> 1 } #>\t7\n";
+
+        LocalDataset.Refresh r = local.refreshFrom((sparql, format) -> {
+            byte[] body = remote.select(sparql, format);
+            if (!sparql.equals(LocalDataset.MARKER_QUERY)) return body;
+            return (new String(body, StandardCharsets.UTF_8) + bad).getBytes(StandardCharsets.UTF_8);
+        });
+
+        assertEquals(List.of(A), r.updated);
+        assertTrue(r.removed.isEmpty());
+    }
+
+    @Test
+    void clientRefreshGoesThroughItsRetries() throws Exception {
+        LocalDataset local = dataset(country("Aland", "A old", null, 1));
+        LocalDataset remote = dataset(country("Aland", "A new", null, 2) + country("Bland", "B", null, 1));
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(remote, Faults.none().failFirst(1, 503))) {
+            DbpediaClient client = new DbpediaClient(stub.url(), Duration.ofSeconds(5), 2, local);
+
+            LocalDataset.Refresh r = client.refreshLocal();
+
+            assertEquals(Set.of(A, B), Set.copyOf(r.updated));
+            assertEquals("\"A new\"@en", label(local, A));
+            // the marker query after one 503, then the changed countries
+            assertEquals(3, stub.requestCount());
+        }
+    }
+
+    @Test
+    void valuesBlockTakesOnlyAbsoluteIris() {
+        assertEquals("VALUES ?country { <" + A + "> <http://x/%C3%A9> }",
+                SparqlTemplate.values("country", List.of(A, "http://x/%C3%A9")));
+        for (String bad : List.of("http://x/a> } ?s ?p ?o {", "http://x/a b", "relative/path", "http://x/{a}")) {
+            assertThrows(IllegalArgumentException.class, () -> SparqlTemplate.values("country", List.of(A, bad)), bad);
+        }
+    }
+
+    private LocalDataset dataset(String turtle) throws IOException {
+        Path file = Files.createTempFile(dir, "data", ".ttl");
+        Files.writeString(file, PREFIXES + turtle);
+        LocalDataset ds = LocalDataset.inMemory();
+        ds.loadFile(file);
+        return ds;
+    }
+
+    private static String country(String name, String label, String capital, long rev) {
+        StringBuilder sb = new StringBuilder("dbr:" + name + " a dbo:Country ; dct:subject dbc:Countries_in_Asia ;\n")
+                .append("    rdfs:label \"" + label + "\"@en ; dbo:wikiPageRevisionID " + rev);
+        if (capital != null) sb.append(" ;\n    dbo:capital dbr:" + capital);
+        sb.append(" .\n");
+        if (capital != null) sb.append("dbr:" + capital + " rdfs:label \"" + capital + "\"@en .\n");
+        return sb.toString();
+    }
+
+    private static String label(LocalDataset ds, String country) {
+        return cells(ds, "SELECT ?l WHERE { <" + country + "> <http://www.w3.org/2000/01/rdf-schema#label> ?l }");
+    }
+
+    private static String objects(LocalDataset ds, String country) {
+        return cells(ds, "SELECT ?p ?o WHERE { <" + country + "> ?p ?o } ORDER BY ?p ?o");
+    }
+
+    /** The TSV result without its header line. */
+    private static String cells(LocalDataset ds, String sparql) {
+        String tsv = new String(ds.select(sparql, ResultFormat.TSV), StandardCharsets.UTF_8);
+        return tsv.substring(tsv.indexOf('\n') + 1).strip();
+    }
+}
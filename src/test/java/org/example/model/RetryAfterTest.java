@@ -0,0 +1,94 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.example.model.StubSparqlEndpoint.Faults;
+import org.example.model.asianCountry.CountryFact;
+import org.junit.jupiter.api.Test;
+
+/** 429 answers with and without Retry-After, and what they do to the host's throttle. */
+class RetryAfterTest {
+
+    private static final List<CountryFact> POOL = Fixtures.facts(48);
+    private static final List<String> ONE_COUNTRY = List.of(POOL.get(0).getCountryUri());
+
+    @Test
+    void waitsAsLongAsRetryAfterSays() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(1, 429).retryAfter(2))) {
+            long t0 = System.nanoTime();
+            assertEquals(1, client(stub).getAsianCountryFacts(ONE_COUNTRY).size());
+
+            assertTrue(System.nanoTime() - t0 >= TimeUnit.SECONDS.toNanos(2));
+            assertEquals(2, stub.requestCount());
+            assertEquals(1, stub.throttled.get());
+        }
+    }
+
+    @Test
+    void asyncRequestsWaitToo() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(1, 429).retryAfter(1))) {
+            long t0 = System.nanoTime();
+            assertEquals(5, client(stub).getAsianCapitalNameAsync(5).get().size());
+
+            assertTrue(System.nanoTime() - t0 >= TimeUnit.SECONDS.toNanos(1));
+            assertEquals(1, stub.throttled.get());
+        }
+    }
+
+    @Test
+    void givesUpWhenRetryAfterIsTooLong() throws Exception {
+        int seconds = (int) DbpediaClient.MAX_RETRY_AFTER.toSeconds() + 30;
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(1, 429).retryAfter(seconds))) {
+            long t0 = System.nanoTime();
+            IOException e = assertThrows(IOException.class, () -> client(stub).getAsianCountryFacts(ONE_COUNTRY));
+
+            assertTrue(e.getMessage().contains("HTTP 429"), e.getMessage());
+            assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(1, stub.requestCount());
+        }
+    }
+
+    @Test
+    void throttlingHalvesTheHostsConcurrencyLimit() throws Exception {
+        try (StubSparqlEndpoint stub = StubSparqlEndpoint.start(POOL, Faults.none().failFirst(1, 429))) {
+            assertEquals(1, client(stub).getAsianCountryFacts(ONE_COUNTRY).size());
+
+            // 4 halved by the 429, plus 1/2 for the answer that followed
+            assertEquals(2, SparqlThrottle.forEndpoint(stub.url()).limit());
+        }
+    }
+
+    @Test
+    void readsRetryAfterAsSecondsOrDate() {
+        assertEquals(TimeUnit.SECONDS.toNanos(7), DbpediaClient.retryAfterNanos(retryAfter("7")));
+        assertEquals(0, DbpediaClient.retryAfterNanos(retryAfter("-3")));
+        assertEquals(0, DbpediaClient.retryAfterNanos(retryAfter("soon")));
+        assertEquals(0, DbpediaClient.retryAfterNanos(HttpHeaders.of(Map.of(), (a, b) -> true)));
+
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(10));
+        long nanos = DbpediaClient.retryAfterNanos(retryAfter(date));
+        assertTrue(nanos > TimeUnit.SECONDS.toNanos(8) && nanos <= TimeUnit.SECONDS.toNanos(10), nanos + " ns");
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(1));
+        assertEquals(0, DbpediaClient.retryAfterNanos(retryAfter(past)));
+    }
+
+    private static DbpediaClient client(StubSparqlEndpoint stub) {
+        return new DbpediaClient(stub.url(), Duration.ofSeconds(5), 2);
+    }
+
+    private static HttpHeaders retryAfter(String value) {
+        return HttpHeaders.of(Map.of("Retry-After", List.of(value)), (a, b) -> true);
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.example.model.SparqlThrottle.Outcome;
+import org.example.model.SparqlThrottle.Permit;
+import org.junit.jupiter.api.Test;
+
+class SparqlThrottleTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void admitsUpToTheLimitAndTheNextOnARelease() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        List<Permit> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) held.add(throttle.acquire(SECOND));
+
+        CompletableFuture<Permit> waiting = throttle.acquireAsync(SECOND);
+        assertFalse(waiting.isDone());
+        held.get(0).release(Outcome.CANCELLED, 0);
+        assertTrue(waiting.isDone());
+    }
+
+    @Test
+    void waiterNotAdmittedInTimeFails() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        for (int i = 0; i < 4; i++) throttle.acquire(SECOND);
+
+        assertThrows(SparqlThrottle.AdmissionTimeoutException.class, () -> throttle.acquire(SECOND / 20));
+    }
+
+    @Test
+    void successesRaiseTheLimitByOneOverLimit() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        for (int i = 0; i < 20; i++) throttle.acquire(SECOND).release(Outcome.OK, 0);
+        // 4 + 1/4 + 1/4.25 + ... after 20 answers
+        assertEquals(7, throttle.limit());
+
+        SparqlThrottle capped = new SparqlThrottle("test", 0, 1, 6);
+        for (int i = 0; i < 100; i++) capped.acquire(SECOND).release(Outcome.OK, 0);
+        assertEquals(6, capped.limit());
+    }
+
+    @Test
+    void overloadHalvesTheLimitOncePerInterval() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        throttle.acquire(SECOND).release(Outcome.OVERLOADED, 0);
+        assertEquals(2, throttle.limit());
+        throttle.acquire(SECOND).release(Outcome.OVERLOADED, 0);
+        assertEquals(2, throttle.limit());
+
+        Thread.sleep(1_100);
+        throttle.acquire(SECOND).release(Outcome.OVERLOADED, 0);
+        assertEquals(1, throttle.limit());
+        Thread.sleep(1_100);
+        throttle.acquire(SECOND).release(Outcome.OVERLOADED, 0);
+        assertEquals(1, throttle.limit());
+    }
+
+    @Test
+    void failuresThatSayNothingAboutLoadLeaveTheLimit() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        for (int i = 0; i < 10; i++) {
+            throttle.acquire(SECOND).release(Outcome.FAILED, 0);
+            throttle.acquire(SECOND).release(Outcome.CANCELLED, 0);
+        }
+        assertEquals(4, throttle.limit());
+    }
+
+    @Test
+    void retryAfterHoldsBackEveryRequest() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 0, 1, 32);
+        throttle.acquire(SECOND).release(Outcome.OVERLOADED, SECOND / 2);
+
+        long t0 = System.nanoTime();
+        CompletableFuture<Permit> first = throttle.acquireAsync(2 * SECOND);
+        CompletableFuture<Permit> second = throttle.acquireAsync(2 * SECOND);
+        first.get();
+        second.get();
+        assertTrue(System.nanoTime() - t0 >= SECOND / 2 - SECOND / 50);
+    }
+
+    @Test
+    void tokenBucketSpacesRequestsOutPastTheBurst() throws Exception {
+        SparqlThrottle throttle = new SparqlThrottle("test", 10, 2, 32);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 5; i++) throttle.acquire(SECOND).release(Outcome.OK, 0);
+
+        // two from the burst, three more at 10 per second
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        assertTrue(ms >= 280 && ms < 1000, ms + " ms");
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.ResultSetMgr;
+import org.apache.jena.riot.resultset.ResultSetLang;
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * Benchmark and test inputs derived from a recorded DBpedia response (48 Asian countries).
+ * Larger sizes repeat the recorded rows with suffixed URIs and labels so every row stays unique.
+ */
+public final class Fixtures {
+
+    public static final String RECORDED_FACTS = "/fixtures/asian-country-facts.json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Fixtures() {}
+
+    public static byte[] recordedFacts() {
+        try (InputStream in = Fixtures.class.getResourceAsStream(RECORDED_FACTS)) {
+            if (in == null) throw new IOException("missing " + RECORDED_FACTS);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** SPARQL JSON result with exactly {@code rows} bindings. */
+    public static byte[] factsJson(int rows) {
+        try {
+            ObjectNode doc = (ObjectNode) MAPPER.readTree(recordedFacts());
+            ArrayNode recorded = (ArrayNode) doc.path("results").path("bindings");
+            ArrayNode scaled = MAPPER.createArrayNode();
+            for (int i = 0; i < rows; i++) {
+                ObjectNode row = recorded.get(i % recorded.size()).deepCopy();
+                int round = i / recorded.size();
+                if (round > 0) {
+                    suffix(row, "country", "_" + round);
+                    suffix(row, "countryLabel", " " + round);
+                    suffix(row, "capital", "_" + round);
+                    suffix(row, "capitalLabel", " " + round);
+                }
+                scaled.add(row);
+            }
+            ((ObjectNode) doc.get("results")).set("bindings", scaled);
+            return MAPPER.writeValueAsBytes(doc);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** {@link #factsJson} converted to another results format. */
+    public static byte[] facts(int rows, ResultFormat format) {
+        return convert(rows == 48 ? recordedFacts() : factsJson(rows), format);
+    }
+
+    /** A SPARQL JSON result written in {@code format} by Jena. */
+    public static byte[] convert(byte[] json, ResultFormat format) {
+        if (format == ResultFormat.JSON) return json;
+        ResultSet rs = ResultSetMgr.read(new ByteArrayInputStream(json), ResultSetLang.RS_JSON);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (format == ResultFormat.TSV) ResultSetFormatter.outputAsTSV(out, rs);
+        else ResultSetFormatter.outputAsCSV(out, rs);
+        return out.toByteArray();
+    }
+
+    /** {@code n} unique facts parsed from {@link #factsJson}. */
+    public static List<CountryFact> facts(int n) {
+        try {
+            return new ArrayList<>(DbpediaClient.parseCountryFacts(new java.io.ByteArrayInputStream(factsJson(n))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void suffix(ObjectNode row, String var, String suffix) {
+        ObjectNode cell = (ObjectNode) row.get(var);
+        if (cell != null) cell.put("value", cell.get("value").asText() + suffix);
+    }
+}
@@ -0,0 +1,389 @@
+package org.example.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.example.model.asianCountry.CountryFact;
+
+/**
+ * Local stand-in for dbpedia.org/sparql.
+ *
+ * Fixture facts are loaded into a {@link LocalDataset} with the DBpedia predicates, so the
+ * exact queries DbpediaClient sends are answered by ARQ. On top of that every request can be
+ * delayed (log-normal latency), rejected with 429 or a 5xx, streamed slowly, or cut off
+ * mid-response, with the rates set in {@link Faults}; tests can also fail the first few
+ * requests outright.
+ *
+ * Results come in the format asked for (Accept or the format parameter: JSON, TSV or CSV) and
+ * gzip-compressed when the request accepts it, like Virtuoso.
+ */
+public class StubSparqlEndpoint implements AutoCloseable {
+
+    private static final String DBO = "http://dbpedia.org/ontology/";
+    private static final String DBP = "http://dbpedia.org/property/";
+    private static final String ASIA = "http://dbpedia.org/resource/Category:Countries_in_Asia";
+    private static final int SLOW_CHUNK = 512;
+
+    /** Fault mix; rates are probabilities per request and are checked in the order listed. */
+    public static final class Faults {
+        double latencyMedianMs;
+        double latencySigma;
+        double throttleRate;
+        double serverErrorRate;
+        double resetRate;
+        double slowBodyRate;
+        long slowChunkDelayMs = 20;
+        int retryAfterSeconds = -1;
+        int rateLimit;
+        int concurrencyLimit;
+        long failFirst;
+        int failStatus;
+
+        public static Faults none() { return new Faults(); }
+
+        /** Log-normal latency with the given median; sigma 0 means a fixed delay. */
+        public Faults latency(double medianMs, double sigma) {
+            this.latencyMedianMs = medianMs;
+            this.latencySigma = sigma;
+            return this;
+        }
+        public Faults throttle(double rate) { this.throttleRate = rate; return this; }
+        public Faults serverErrors(double rate) { this.serverErrorRate = rate; return this; }
+        public Faults resets(double rate) { this.resetRate = rate; return this; }
+        public Faults slowBodies(double rate, long chunkDelayMs) {
+            this.slowBodyRate = rate;
+            this.slowChunkDelayMs = chunkDelayMs;
+            return this;
+        }
+        /**
+         * Answers the first {@code requests} requests the endpoint ever gets with {@code status}
+         * (and Retry-After, when set), before any other fault.
+         */
+        public Faults failFirst(long requests, int status) {
+            this.failFirst = requests;
+            this.failStatus = status;
+            return this;
+        }
+        /** Adds a Retry-After header to 429 and {@link #failFirst} responses; negative leaves it out. */
+        public Faults retryAfter(int seconds) { this.retryAfterSeconds = seconds; return this; }
+        /**
+         * Server-side limits like a public endpoint's: more than {@code perSecond} requests in a
+         * one-second window get 429 with Retry-After until the window ends, more than
+         * {@code concurrent} in flight get 503. Zero turns a limit off.
+         */
+        public Faults limits(int perSecond, int concurrent) {
+            this.rateLimit = perSecond;
+            this.concurrencyLimit = concurrent;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("latency=%.0fms(sigma %.2f) 429=%.2f 5xx=%.2f reset=%.2f slow=%.2f limits=%d/s,%d",
+                    latencyMedianMs, latencySigma, throttleRate, serverErrorRate, resetRate, slowBodyRate,
+                    rateLimit, concurrencyLimit);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final LocalDataset data;
+    private final Map<String, byte[]> answers = new ConcurrentHashMap<>();
+    private volatile Faults faults;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong ok = new AtomicLong();
+    final AtomicLong throttled = new AtomicLong();
+    final AtomicLong serverErrors = new AtomicLong();
+    final AtomicLong resets = new AtomicLong();
+    final AtomicLong slowBodies = new AtomicLong();
+    final AtomicLong limited = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long windowStart = System.nanoTime();
+    private int windowCount;
+
+    private StubSparqlEndpoint(LocalDataset data, Faults faults) throws IOException {
+        this.data = data;
+        this.faults = faults;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-sparql");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(workers);
+        server.createContext("/sparql", this::handle);
+        server.start();
+    }
+
+    /** Starts an endpoint on a free local port answering over the given facts. */
+    public static StubSparqlEndpoint start(List<CountryFact> facts, Faults faults) throws IOException {
+        return new StubSparqlEndpoint(dataset(facts), faults);
+    }
+
+    /** Starts an endpoint on a free local port answering over {@code data} as it is. */
+    public static StubSparqlEndpoint start(LocalDataset data, Faults faults) throws IOException {
+        return new StubSparqlEndpoint(data, faults);
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/sparql";
+    }
+
+    public void setFaults(Faults faults) {
+        this.faults = faults;
+    }
+
+    public long requestCount() { return requests.get(); }
+
+    public String stats() {
+        return String.format("requests=%d ok=%d 429=%d 5xx=%d reset=%d slow=%d over-limit=%d sent=%d KB",
+                requests.get(), ok.get(), throttled.get(), serverErrors.get(), resets.get(), slowBodies.get(),
+                limited.get(), bytesSent.get() / 1024);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        long n = requests.incrementAndGet();
+        inFlight.incrementAndGet();
+        try (ex) {
+            Map<String, String> params = paramsOf(ex);
+            String query = params.get("query");
+            if (query == null) {
+                send(ex, 400, "missing query".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Faults f = faults;
+            if (n <= f.failFirst) {
+                if (f.failStatus == 429) throttled.incrementAndGet();
+                else serverErrors.incrementAndGet();
+                if (f.retryAfterSeconds >= 0) {
+                    ex.getResponseHeaders().set("Retry-After", Integer.toString(f.retryAfterSeconds));
+                }
+                send(ex, f.failStatus, ("injected " + f.failStatus).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (f.concurrencyLimit > 0 && inFlight.get() > f.concurrencyLimit) {
+                limited.incrementAndGet();
+                send(ex, 503, "Too many concurrent requests".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            long waitMs = f.rateLimit > 0 ? overRate(f.rateLimit) : 0;
+            if (waitMs > 0) {
+                limited.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", Long.toString((waitMs + 999) / 1000));
+                send(ex, 429, "Rate limit exceeded".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            sleep(latency(f, rnd));
+
+            if (rnd.nextDouble() < f.throttleRate) {
+                throttled.incrementAndGet();
+                if (f.retryAfterSeconds >= 0) {
+                    ex.getResponseHeaders().set("Retry-After", Integer.toString(f.retryAfterSeconds));
+                }
+                send(ex, 429, "Too Many Requests".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (rnd.nextDouble() < f.serverErrorRate) {
+                serverErrors.incrementAndGet();
+                int status = rnd.nextBoolean() ? 503 : 500;
+                send(ex, status, ("Virtuoso S1T00 Error SR171: Transaction timed out").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            ResultFormat format = formatOf(params.get("format"), ex.getRequestHeaders().getFirst("Accept"));
+            String encoding = ex.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = encoding != null && encoding.toLowerCase().contains("gzip");
+            byte[] body;
+            try {
+                body = answers.computeIfAbsent(format.label + (gzip ? "+gzip " : " ") + query,
+                        key -> encode(data.select(query, format), gzip));
+            } catch (RuntimeException e) {
+                send(ex, 400, String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", format.mediaType + "; charset=UTF-8");
+            if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+
+            if (rnd.nextDouble() < f.resetRate) {
+                // announce the full body, send half, then drop the connection
+                resets.incrementAndGet();
+                ex.sendResponseHeaders(200, body.length);
+                OutputStream out = ex.getResponseBody();
+                out.write(body, 0, body.length / 2);
+                out.flush();
+                throw new IOException("injected reset");
+            }
+            if (rnd.nextDouble() < f.slowBodyRate) {
+                slowBodies.incrementAndGet();
+                ex.sendResponseHeaders(200, 0);
+                OutputStream out = ex.getResponseBody();
+                for (int off = 0; off < body.length; off += SLOW_CHUNK) {
+                    out.write(body, off, Math.min(SLOW_CHUNK, body.length - off));
+                    out.flush();
+                    sleep(f.slowChunkDelayMs);
+                }
+                ok.incrementAndGet();
+                bytesSent.addAndGet(body.length);
+                return;
+            }
+            send(ex, 200, body);
+            ok.incrementAndGet();
+            bytesSent.addAndGet(body.length);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /** Counts the request in the current one-second window; ms until the window ends if over the limit. */
+    private synchronized long overRate(int perSecond) {
+        long now = System.nanoTime();
+        if (now - windowStart >= 1_000_000_000L) {
+            windowStart = now;
+            windowCount = 0;
+        }
+        if (++windowCount <= perSecond) return 0;
+        return Math.max(1, (windowStart + 1_000_000_000L - now) / 1_000_000);
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.sendResponseHeaders(status, body.length);
+        ex.getResponseBody().write(body);
+    }
+
+    /** Parameters of a form POST (what DbpediaClient sends) or a GET. */
+    private static Map<String, String> paramsOf(HttpExchange ex) throws IOException {
+        String raw;
+        if ("POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            try (InputStream in = ex.getRequestBody()) {
+                raw = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } else {
+            raw = ex.getRequestURI().getRawQuery();
+        }
+        Map<String, String> params = new HashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /** The format parameter wins over Accept, as on Virtuoso; JSON when neither names one. */
+    private static ResultFormat formatOf(String param, String accept) {
+        ResultFormat f = ResultFormat.ofMediaType(param);
+        if (f == null && accept != null) {
+            for (String type : accept.split(",")) {
+                f = ResultFormat.ofMediaType(type);
+                if (f != null) break;
+            }
+        }
+        return f != null ? f : ResultFormat.JSON;
+    }
+
+    private static byte[] encode(byte[] body, boolean gzip) {
+        if (!gzip) return body;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream z = new GZIPOutputStream(out)) {
+            z.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static long latency(Faults f, ThreadLocalRandom rnd) {
+        if (f.latencyMedianMs <= 0) return 0;
+        return Math.round(f.latencyMedianMs * Math.exp(f.latencySigma * rnd.nextGaussian()));
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes the facts as DBpedia-shaped triples and loads them into an in-memory dataset. */
+    private static LocalDataset dataset(List<CountryFact> facts) throws IOException {
+        Model m = ModelFactory.createDefaultModel();
+        Resource country = m.createResource(DBO + "Country");
+        Resource asia = m.createResource(ASIA);
+        Property capital = m.createProperty(DBO, "capital");
+        Property population = m.createProperty(DBO, "populationTotal");
+        Property thumbnail = m.createProperty(DBO, "thumbnail");
+        Property dbpCapital = m.createProperty(DBP, "capital");
+
+        for (CountryFact f : facts) {
+            Resource c = m.createResource(f.getCountryUri())
+                    .addProperty(RDF.type, country)
+                    .addProperty(DCTerms.subject, asia)
+                    .addProperty(RDFS.label, f.getCountry(), "en");
+            if (f.getCapitalUri() != null) {
+                Resource cap = m.createResource(f.getCapitalUri());
+                if (f.getCapital() != null) cap.addProperty(RDFS.label, f.getCapital(), "en");
+                // half the countries use dbp:capital, like on DBpedia where dbo:capital is patchy
+                c.addProperty(Math.floorMod(f.getCountryUri().hashCode(), 2) == 0 ? capital : dbpCapital, cap);
+            }
+            if (f.getPopulation() != null) {
+                c.addLiteral(population, m.createTypedLiteral(f.getPopulation().toString(),
+                        XSDDatatype.XSDnonNegativeInteger));
+            }
+            if (f.getThumbnail() != null) c.addProperty(thumbnail, m.createResource(f.getThumbnail()));
+        }
+
+        Path file = Files.createTempFile("stub-sparql", ".ttl");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                RDFDataMgr.write(out, m, Lang.TURTLE);
+            }
+            LocalDataset ds = LocalDataset.inMemory();
+            ds.loadFile(file);
+            return ds;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}